@@ -0,0 +1,33 @@
+package co.psyke.test_coverage.aggregates;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes the outstanding credits and the user counts under
+ * {@code users.credits.total} and {@code users.count}.
+ */
+@Component
+public class CreditAggregateMetrics implements MeterBinder {
+    
+    @Autowired
+    private CreditAggregates creditAggregates;
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("users.credits.total", creditAggregates, aggregates -> aggregates.summary().totalCredits())
+                .description("Credits held by all users")
+                .register(registry);
+        Gauge.builder("users.count", creditAggregates, aggregates -> aggregates.summary().users())
+                .description("Registered users")
+                .tag("state", "all")
+                .register(registry);
+        Gauge.builder("users.count", creditAggregates, aggregates -> aggregates.summary().activeUsers())
+                .description("Registered users")
+                .tag("state", "active")
+                .register(registry);
+    }
+}
@@ -0,0 +1,160 @@
+package co.psyke.test_coverage.aggregates;
+
+import co.psyke.test_coverage.config.CreditAggregateProperties;
+import co.psyke.test_coverage.model.User;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Credit totals, bucket counts and a ranking by credits, kept up to date from
+ * every user write instead of being computed over the table.
+ * <p>
+ * The last known credits and active flag of each user are kept so that a write
+ * only applies its difference: totals live in {@link LongAdder}s, so concurrent
+ * writers don't contend on a single counter, and the ranking is a skip list
+ * ordered by credits, so the top N is read by walking N entries. Amounts are
+ * summed in cents to keep totals exact.
+ * <p>
+ * Updates arrive after their commit, in no particular order, so each carries
+ * the {@link User#getVersion() version} of its row and never replaces a newer
+ * one, and a removed user is never brought back. Each figure is therefore exact
+ * once writes settle, but a summary read while writes are in flight may
+ * combine counters from slightly different moments.
+ */
+@Component
+public class CreditAggregates {
+    
+    private static final Comparator<Ranked> BY_CREDITS = Comparator.comparingLong(Ranked::cents).reversed()
+            .thenComparingLong(Ranked::userId);
+    
+    private final long[] bounds;
+    private final LongAdder[] buckets;
+    
+    private final ConcurrentHashMap<Long, Ranked> users = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Ranked> ranking = new ConcurrentSkipListSet<>(BY_CREDITS);
+    private final LongAdder totalCents = new LongAdder();
+    private final LongAdder activeUsers = new LongAdder();
+    
+    // Ids are never reused, so a late update of a removed user is always stale
+    private final Set<Long> removed = ConcurrentHashMap.newKeySet();
+    
+    @Autowired
+    public CreditAggregates(CreditAggregateProperties properties) {
+        this.bounds = properties.getBucketBounds().stream()
+                .mapToLong(CreditAggregates::cents)
+                .sorted()
+                .distinct()
+                .toArray();
+        this.buckets = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+    
+    /** Records the state of a user that was created, written or read, unless a newer one is known. */
+    public void updated(User user) {
+        if (user == null || user.getId() == null || user.getCredits() == null) {
+            return;
+        }
+        Ranked next = new Ranked(user.getId(), cents(user.getCredits()), !Boolean.FALSE.equals(user.getActive()),
+                user.getVersion() == null ? 0 : user.getVersion());
+        // Per-key atomic, so concurrent writes to one user apply their differences one at a time
+        users.compute(next.userId, (id, previous) -> {
+            // An equal version is the same state, as read by the loader or the change poller
+            if (removed.contains(id) || previous != null && previous.version > next.version) {
+                return previous;
+            }
+            apply(previous, next);
+            return next;
+        });
+    }
+    
+    public void removed(Long userId) {
+        // Before the removal, so an update racing it either sees the mark or is removed here
+        removed.add(userId);
+        users.computeIfPresent(userId, (id, previous) -> {
+            apply(previous, null);
+            return null;
+        });
+    }
+    
+    public Summary summary() {
+        return new Summary(totalCents.sum() / 100.0, users.size(), activeUsers.sum());
+    }
+    
+    /** Users per credit range, the last range being open-ended. */
+    public List<Bucket> distribution() {
+        List<Bucket> distribution = new ArrayList<>(buckets.length);
+        for (int i = 0; i < buckets.length; i++) {
+            Double from = i == 0 ? 0.0 : bounds[i - 1] / 100.0;
+            Double to = i == bounds.length ? null : bounds[i] / 100.0;
+            distribution.add(new Bucket(from, to, buckets[i].sum()));
+        }
+        return distribution;
+    }
+    
+    /** The {@code n} users with the most credits, ties broken by id. */
+    public List<Ranked> top(int n) {
+        List<Ranked> top = new ArrayList<>(Math.min(n, users.size()));
+        Iterator<Ranked> iterator = ranking.iterator();
+        while (top.size() < n && iterator.hasNext()) {
+            top.add(iterator.next());
+        }
+        return top;
+    }
+    
+    private void apply(Ranked previous, Ranked next) {
+        if (previous != null) {
+            ranking.remove(previous);
+            totalCents.add(-previous.cents);
+            buckets[bucket(previous.cents)].decrement();
+            if (previous.active) {
+                activeUsers.decrement();
+            }
+        }
+        if (next != null) {
+            ranking.add(next);
+            totalCents.add(next.cents);
+            buckets[bucket(next.cents)].increment();
+            if (next.active) {
+                activeUsers.increment();
+            }
+        }
+    }
+    
+    private int bucket(long cents) {
+        int index = Arrays.binarySearch(bounds, cents);
+        // A credit equal to a bound starts that bound's bucket
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+    
+    private static long cents(double credits) {
+        return Math.round(credits * 100);
+    }
+    
+    public record Summary(double totalCredits, long users, long activeUsers) {
+    }
+    
+    public record Bucket(Double from, Double to, long users) {
+    }
+    
+    public record Ranked(long userId, @JsonIgnore long cents, boolean active, @JsonIgnore long version) {
+        
+        @JsonProperty
+        public double credits() {
+            return cents / 100.0;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package co.psyke.test_coverage.aggregates;
+
+import co.psyke.test_coverage.repository.UserRepository;
+import co.psyke.test_coverage.sharding.ShardRouter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fills {@link CreditAggregates} with the users already stored, which in the
+ * durable profile survive a restart. This is the only scan of the users table
+ * the aggregates need. It runs while requests are already served, so a row it
+ * reads may be older than a write recorded meanwhile; the aggregates keep the
+ * newer version, and users removed meanwhile stay removed.
+ */
+@Component
+public class CreditAggregatesLoader implements ApplicationRunner {
+    
+    @Autowired
+    private CreditAggregates creditAggregates;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    @Override
+    public void run(ApplicationArguments args) {
+        shardRouter.scatter(userRepository::findAll).forEach(creditAggregates::updated);
+    }
+}
@@ -0,0 +1,89 @@
+package co.psyke.test_coverage.audit;
+
+import co.psyke.test_coverage.stream.CreditEvent;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded ring of credit events with any number of producers and a single
+ * consumer.
+ * <p>
+ * A producer claims the next sequence with one CAS, writes its slot and then
+ * publishes the sequence number into that slot's marker; the consumer reads
+ * slots in sequence order and stops at the first one not published yet, so
+ * events come out in the order their sequences were claimed. Slots are only
+ * reused after the consumer has released them, which is what bounds the ring.
+ */
+final class AuditRing {
+    
+    private final CreditEvent[] slots;
+    private final AtomicLongArray published;
+    private final int mask;
+    
+    // Next sequence to claim, and next sequence to consume; only the consumer moves the tail
+    private final AtomicLong head = new AtomicLong();
+    private volatile long tail;
+    
+    AuditRing(int requestedCapacity) {
+        int capacity = requestedCapacity <= 1 ? 1 : Integer.highestOneBit(requestedCapacity - 1) << 1;
+        this.slots = new CreditEvent[capacity];
+        this.published = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+    }
+    
+    /** Appends the event, or returns false at once when the ring is full. */
+    boolean offer(CreditEvent event) {
+        long sequence;
+        do {
+            sequence = head.get();
+            if (sequence - tail >= slots.length) {
+                return false;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+        
+        int slot = (int) (sequence & mask);
+        slots[slot] = event;
+        // Volatile write: the consumer seeing the sequence also sees the event
+        published.set(slot, sequence);
+        return true;
+    }
+    
+    /** Consumer only: adds up to {@code max} published events to {@code batch} without releasing them. */
+    int peek(List<CreditEvent> batch, int max) {
+        long first = tail;
+        int count = 0;
+        while (count < max) {
+            long sequence = first + count;
+            int slot = (int) (sequence & mask);
+            if (published.get(slot) != sequence) {
+                break;
+            }
+            batch.add(slots[slot]);
+            count++;
+        }
+        return count;
+    }
+    
+    /** Consumer only: frees the first {@code count} events for producers. */
+    void release(int count) {
+        long first = tail;
+        for (long sequence = first; sequence < first + count; sequence++) {
+            slots[(int) (sequence & mask)] = null;
+        }
+        tail = first + count;
+    }
+    
+    int capacity() {
+        return slots.length;
+    }
+    
+    // Claimed but not yet released, including events still being written
+    int size() {
+        return (int) (head.get() - tail);
+    }
+}
@@ -0,0 +1,19 @@
+package co.psyke.test_coverage.audit;
+
+import co.psyke.test_coverage.stream.CreditEvent;
+
+import java.util.List;
+
+/**
+ * Receives the credit events drained from one stripe of the
+ * {@link CreditAuditPipeline}. Every bean implementing it is registered.
+ * <p>
+ * A stripe's batches are delivered one at a time, from that stripe's thread
+ * and in publication order, so the events of a user always arrive in order.
+ * Different stripes call in concurrently. A batch that throws is delivered
+ * again after a back-off, so consumers should make each batch atomic.
+ */
+public interface CreditAuditConsumer {
+    
+    void consume(int stripe, List<CreditEvent> batch) throws Exception;
+}
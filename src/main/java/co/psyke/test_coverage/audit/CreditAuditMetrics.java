@@ -0,0 +1,45 @@
+package co.psyke.test_coverage.audit;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes the audit pipeline's event counts, backlog and consumer failures
+ * under {@code credits.audit.*}. {@code credits.audit.lost} counts events
+ * missing from the audit for good and should always be zero.
+ */
+@Component
+public class CreditAuditMetrics implements MeterBinder {
+    
+    @Autowired
+    private CreditAuditPipeline pipeline;
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("credits.audit.events", pipeline, CreditAuditPipeline::getPublished)
+                .description("Credit events queued for auditing")
+                .tag("outcome", "published")
+                .register(registry);
+        FunctionCounter.builder("credits.audit.events", pipeline, CreditAuditPipeline::getSpilled)
+                .description("Credit events queued for auditing")
+                .tag("outcome", "spilled")
+                .register(registry);
+        FunctionCounter.builder("credits.audit.lost", pipeline, CreditAuditPipeline::getDropped)
+                .description("Credit events that could be neither queued nor spilled, and are missing from the audit")
+                .register(registry);
+        FunctionCounter.builder("credits.audit.events", pipeline, CreditAuditPipeline::getDelivered)
+                .description("Credit events queued for auditing")
+                .tag("outcome", "delivered")
+                .register(registry);
+        FunctionCounter.builder("credits.audit.failures", pipeline, CreditAuditPipeline::getFailures)
+                .description("Batches a consumer failed on and had retried")
+                .register(registry);
+        Gauge.builder("credits.audit.queued", pipeline, CreditAuditPipeline::getQueued)
+                .description("Events waiting to be delivered")
+                .register(registry);
+    }
+}
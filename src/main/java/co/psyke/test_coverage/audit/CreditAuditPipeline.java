@@ -0,0 +1,371 @@
+package co.psyke.test_coverage.audit;
+
+import co.psyke.test_coverage.config.CreditAuditProperties;
+import co.psyke.test_coverage.stream.CreditEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records every credit change for auditing without writing on the request
+ * thread.
+ * <p>
+ * {@link #publish} appends the event to one of {@code app.audit.stripes}
+ * {@link AuditRing}s, picked by user id, and returns; each ring is drained by
+ * its own thread, which hands batches of up to {@code app.audit.batch-size}
+ * events to every {@link CreditAuditConsumer}, so audit writes become a few
+ * sequential appends instead of one per operation. A user always lands on the
+ * same ring and a ring is delivered in order, one batch at a time, so each
+ * user's events reach the consumers in the order they were published.
+ * <p>
+ * A full ring pushes back: the credit operation waits for room for up to
+ * {@code app.audit.offer-timeout}, after which its event is written to the
+ * {@link CreditAuditSpill} and queued again every {@code app.audit.spill.interval}
+ * once the ring has room. While a stripe has events in the spill, its later
+ * events are spilled behind them instead of entering the ring, so per-user
+ * order holds across the spill too. Only an event that could not be spilled
+ * either is lost; it is logged as an error and counted in
+ * {@code credits.audit.lost}. A consumer that fails is retried
+ * with back-off, holding up its stripe, until it succeeds. On shutdown the
+ * rings are drained first; spilled events wait for the next start.
+ */
+@Component
+public class CreditAuditPipeline implements ApplicationRunner, AutoCloseable {
+    
+    private static final Logger log = LoggerFactory.getLogger(CreditAuditPipeline.class);
+    
+    // Backstop for a missed wake-up, an idle stripe is woken by the next publish
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MAX_OFFER_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long MAX_RETRY_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+    
+    private final CreditAuditProperties properties;
+    private final List<CreditAuditConsumer> consumers;
+    private final CreditAuditSpill spill;
+    private final Stripe[] stripes;
+    private final boolean active;
+    
+    private final LongAdder published = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    
+    private ScheduledExecutorService respiller;
+    // Whether the events left in the spill by an earlier run are counted in their stripes
+    private volatile boolean counted;
+    private volatile boolean started;
+    private volatile boolean closed;
+    
+    public CreditAuditPipeline(CreditAuditProperties properties, List<CreditAuditConsumer> consumers) {
+        this(properties, consumers, List.of());
+    }
+    
+    @Autowired
+    public CreditAuditPipeline(CreditAuditProperties properties, List<CreditAuditConsumer> consumers,
+                               List<CreditAuditSpill> spills) {
+        this.properties = properties;
+        this.consumers = List.copyOf(consumers);
+        this.spill = spills.isEmpty() ? null : spills.getFirst();
+        this.active = properties.isEnabled() && !this.consumers.isEmpty();
+        this.stripes = new Stripe[active ? Math.max(properties.getStripes(), 1) : 0];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(i, new AuditRing(properties.getBufferSize()));
+        }
+    }
+    
+    @Override
+    public void run(ApplicationArguments args) {
+        start();
+    }
+    
+    public synchronized void start() {
+        if (started || closed) {
+            return;
+        }
+        started = true;
+        countSpilled();
+        for (Stripe stripe : stripes) {
+            stripe.thread = Thread.ofPlatform()
+                    .name("credit-audit-" + stripe.index)
+                    .daemon(true)
+                    .start(stripe);
+        }
+        if (active && spill != null) {
+            respiller = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                    .name("credit-audit-spill")
+                    .daemon(true)
+                    .factory());
+            long interval = properties.getSpill().getInterval().toMillis();
+            respiller.scheduleWithFixedDelay(this::respillQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * Queues the event for the consumers, or spills it when the ring stayed
+     * full for the whole offer timeout. Returns false when it was dropped:
+     * auditing is off, the pipeline is closed or the spill failed too.
+     */
+    public boolean publish(CreditEvent event) {
+        if (!active || closed) {
+            return false;
+        }
+        if (!counted) {
+            countSpilled();
+        }
+        Stripe stripe = stripes[stripeOf(event.getUserId())];
+        // Behind spilled events the ring would overtake them, so the event joins them
+        if (stripe.inSpill.get() > 0 || !stripe.ring.offer(event) && !awaitRoom(stripe, event)) {
+            return spill(stripe, event);
+        }
+        published.increment();
+        stripe.wake();
+        return true;
+    }
+    
+    public long getPublished() {
+        return published.sum();
+    }
+    
+    public long getSpilled() {
+        return spilled.sum();
+    }
+    
+    public long getDropped() {
+        return dropped.sum();
+    }
+    
+    public long getDelivered() {
+        return delivered.sum();
+    }
+    
+    public long getFailures() {
+        return failures.sum();
+    }
+    
+    // Events waiting for or being delivered, over all stripes
+    public long getQueued() {
+        long queued = 0;
+        for (Stripe stripe : stripes) {
+            queued += stripe.ring.size();
+        }
+        return queued;
+    }
+    
+    /**
+     * Moves up to a batch of spilled events back into their rings, oldest
+     * first, stopping at the first ring that is still full. Returns how many
+     * were queued.
+     */
+    public synchronized int respill() throws Exception {
+        if (spill == null || closed) {
+            return 0;
+        }
+        countSpilled();
+        List<CreditEvent> queued = new ArrayList<>();
+        for (CreditEvent event : spill.pending(Math.max(properties.getBatchSize(), 1))) {
+            Stripe stripe = stripes[stripeOf(event.getUserId())];
+            if (!stripe.ring.offer(event)) {
+                break;
+            }
+            queued.add(event);
+            stripe.wake();
+        }
+        if (!queued.isEmpty()) {
+            // Queued before removed: a failure in between queues an event twice rather than losing it
+            spill.remove(queued);
+            published.add(queued.size());
+            // Only now, so the stripe's new events keep going behind the ones just queued. Never below zero,
+            // which uncounted events of an earlier run would otherwise cause
+            for (CreditEvent event : queued) {
+                stripes[stripeOf(event.getUserId())].inSpill.updateAndGet(count -> Math.max(count - 1, 0));
+            }
+        }
+        return queued.size();
+    }
+    
+    /** Stops accepting events and waits for the queued ones to be delivered. */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        if (respiller != null) {
+            respiller.shutdownNow();
+        }
+        long deadline = System.nanoTime() + properties.getShutdownTimeout().toNanos();
+        for (Stripe stripe : stripes) {
+            if (stripe.thread == null) {
+                continue;
+            }
+            LockSupport.unpark(stripe.thread);
+            try {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || !stripe.thread.join(Duration.ofNanos(remaining))) {
+                    log.warn("Credit audit stripe {} still had {} events at shutdown", stripe.index, stripe.ring.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    
+    int stripeOf(Long userId) {
+        return (int) Math.floorMod(userId, (long) stripes.length);
+    }
+    
+    // Counted before it is written, so no event published after this one returns can pass it
+    private boolean spill(Stripe stripe, CreditEvent event) {
+        if (spill != null) {
+            stripe.inSpill.incrementAndGet();
+            try {
+                spill.spill(event);
+                spilled.increment();
+                log.warn("Credit audit stripe {} is full, spilled {} of {} for user {}", stripe.index,
+                        event.getType(), event.getAmount(), event.getUserId());
+                return true;
+            } catch (Exception e) {
+                stripe.inSpill.decrementAndGet();
+                log.error("Spilling a credit audit event failed: {}", e.toString());
+            }
+        }
+        dropped.increment();
+        log.error("Credit audit stripe {} is full, {} {} of {} for user {} at {} is lost", stripe.index,
+                event.getId(), event.getType(), event.getAmount(), event.getUserId(), event.getTimestamp());
+        return false;
+    }
+    
+    // Before anything is spilled or queued again in this run, so no event is counted twice
+    private synchronized void countSpilled() {
+        if (counted || spill == null || !active) {
+            counted = true;
+            return;
+        }
+        try {
+            long[] pending = spill.pendingByStripe(stripes.length);
+            for (int i = 0; i < stripes.length; i++) {
+                stripes[i].inSpill.addAndGet(pending[i]);
+            }
+        } catch (Exception e) {
+            // Not retried: events spilled meanwhile would be counted twice and hold their stripe in the spill
+            log.warn("Counting the spilled credit audit events failed, new events may overtake them: {}",
+                    e.toString());
+        }
+        counted = true;
+    }
+    
+    private void respillQuietly() {
+        try {
+            int queued = respill();
+            if (queued > 0) {
+                log.info("Queued {} spilled credit audit events again", queued);
+            }
+        } catch (Exception e) {
+            log.warn("Queueing spilled credit audit events failed: {}", e.toString());
+        }
+    }
+    
+    // Parks with growing pauses until the stripe frees a slot or the offer timeout passes
+    private boolean awaitRoom(Stripe stripe, CreditEvent event) {
+        long deadline = System.nanoTime() + properties.getOfferTimeout().toNanos();
+        long pause = 1_000;
+        while (System.nanoTime() - deadline < 0 && !closed && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(pause);
+            pause = Math.min(pause * 2, MAX_OFFER_PARK_NANOS);
+            if (stripe.ring.offer(event)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void deliver(int stripe, List<CreditEvent> batch) {
+        List<CreditEvent> events = Collections.unmodifiableList(batch);
+        for (CreditAuditConsumer consumer : consumers) {
+            // Each consumer is retried on its own, so the others don't see the batch twice
+            long backoff = Math.max(properties.getRetryBackoff().toNanos(), 1);
+            while (true) {
+                try {
+                    consumer.consume(stripe, events);
+                    break;
+                } catch (Exception e) {
+                    failures.increment();
+                    if (closed) {
+                        log.error("Credit audit consumer {} failed on stripe {} during shutdown, {} events lost: {}",
+                                consumer.getClass().getSimpleName(), stripe, events.size(), e.toString());
+                        break;
+                    }
+                    log.warn("Credit audit consumer {} failed on stripe {}, retrying in {} ms: {}",
+                            consumer.getClass().getSimpleName(), stripe, TimeUnit.NANOSECONDS.toMillis(backoff),
+                            e.toString());
+                    LockSupport.parkNanos(backoff);
+                    backoff = Math.min(backoff * 2, MAX_RETRY_BACKOFF_NANOS);
+                }
+            }
+        }
+    }
+    
+    private final class Stripe implements Runnable {
+        
+        private final int index;
+        private final AuditRing ring;
+        // Events of this stripe waiting in the spill
+        private final AtomicLong inSpill = new AtomicLong();
+        private volatile boolean idle;
+        private Thread thread;
+        
+        private Stripe(int index, AuditRing ring) {
+            this.index = index;
+            this.ring = ring;
+        }
+        
+        private void wake() {
+            if (idle) {
+                LockSupport.unpark(thread);
+            }
+        }
+        
+        @Override
+        public void run() {
+            int batchSize = Math.max(properties.getBatchSize(), 1);
+            List<CreditEvent> batch = new ArrayList<>(Math.min(batchSize, ring.capacity()));
+            while (true) {
+                batch.clear();
+                int count = ring.peek(batch, batchSize);
+                if (count > 0) {
+                    deliver(index, batch);
+                    ring.release(count);
+                    delivered.add(count);
+                    continue;
+                }
+                if (closed && ring.size() == 0) {
+                    return;
+                }
+                // Set before checking the ring, so that a publish either is seen here or sees the flag
+                idle = true;
+                if (ring.size() == 0 && !closed) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                } else {
+                    // Claimed but not written yet
+                    Thread.onSpinWait();
+                }
+                idle = false;
+            }
+        }
+    }
+}
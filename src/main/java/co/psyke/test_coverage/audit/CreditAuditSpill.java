@@ -0,0 +1,23 @@
+package co.psyke.test_coverage.audit;
+
+import co.psyke.test_coverage.stream.CreditEvent;
+
+import java.util.List;
+
+/**
+ * Durable overflow of the {@link CreditAuditPipeline}. An event whose ring
+ * stayed full for the whole offer timeout is stored here instead of being
+ * dropped, and queued again once the ring has room.
+ */
+public interface CreditAuditSpill {
+    
+    void spill(CreditEvent event) throws Exception;
+    
+    /** Up to {@code limit} spilled events, oldest first; a user's events always in the order they were spilled. */
+    List<CreditEvent> pending(int limit) throws Exception;
+    
+    /** How many spilled events each of {@code stripes} stripes has, a user's stripe being its id modulo their number. */
+    long[] pendingByStripe(int stripes) throws Exception;
+    
+    void remove(List<CreditEvent> events) throws Exception;
+}
@@ -0,0 +1,56 @@
+package co.psyke.test_coverage.audit;
+
+import co.psyke.test_coverage.sharding.ShardRouter;
+import co.psyke.test_coverage.stream.CreditEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Appends audited credit changes to the {@code credit_audit} table of each
+ * user's shard, one JDBC batch and one transaction per shard and batch. A
+ * batch that failed on one shard is retried whole, so rows are merged on the
+ * event id: the shards that had already committed keep a single copy.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.audit.jdbc", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class JdbcCreditAuditConsumer implements CreditAuditConsumer {
+    
+    private static final String MERGE_SQL =
+            "MERGE INTO credit_audit (event_id, user_id, type, amount, credits, occurred_at) KEY (event_id) "
+            + "VALUES (?, ?, ?, ?, ?, ?)";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Override
+    public void consume(int stripe, List<CreditEvent> batch) {
+        Map<Integer, List<Object[]>> rowsByShard = new LinkedHashMap<>();
+        for (CreditEvent event : batch) {
+            rowsByShard.computeIfAbsent(shardRouter.shardForId(event.getUserId()), shard -> new ArrayList<>())
+                    .add(new Object[] {
+                            event.getId(),
+                            event.getUserId(),
+                            event.getType().name(),
+                            event.getAmount(),
+                            event.getCredits(),
+                            event.getTimestamp()
+                    });
+        }
+        rowsByShard.forEach((shard, rows) -> shardRouter.runOnShard(shard,
+                () -> transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(MERGE_SQL, rows))));
+    }
+}
@@ -0,0 +1,104 @@
+package co.psyke.test_coverage.audit;
+
+import co.psyke.test_coverage.sharding.ShardRouter;
+import co.psyke.test_coverage.stream.CreditEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps spilled audit events in the {@code credit_audit_spill} table of the
+ * user's shard. Each spill is its own statement, merged on the event id so an
+ * event spilled or queued again is stored once. A shard's events are read in
+ * the order they were spilled, so a user's events are too; the shards are
+ * merged by timestamp.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.audit.spill", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class JdbcCreditAuditSpill implements CreditAuditSpill {
+    
+    private static final String MERGE_SQL =
+            "MERGE INTO credit_audit_spill (event_id, user_id, type, amount, credits, occurred_at) KEY (event_id) "
+            + "VALUES (?, ?, ?, ?, ?, ?)";
+    
+    private static final String PENDING_SQL =
+            "SELECT event_id, user_id, type, amount, credits, occurred_at FROM credit_audit_spill "
+            + "ORDER BY seq LIMIT ?";
+    
+    private static final String COUNT_SQL = "SELECT user_id, COUNT(*) AS events FROM credit_audit_spill GROUP BY user_id";
+    
+    private static final String DELETE_SQL = "DELETE FROM credit_audit_spill WHERE event_id = ?";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    @Override
+    public void spill(CreditEvent event) {
+        shardRouter.runOnShard(shardRouter.shardForId(event.getUserId()), () -> jdbcTemplate.update(MERGE_SQL,
+                event.getId(), event.getUserId(), event.getType().name(), event.getAmount(), event.getCredits(),
+                event.getTimestamp()));
+    }
+    
+    @Override
+    public List<CreditEvent> pending(int limit) {
+        List<Deque<CreditEvent>> shards = new ArrayList<>();
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            shards.add(new ArrayDeque<>(shardRouter.onShard(shard, () -> jdbcTemplate.query(PENDING_SQL,
+                    (row, i) -> new CreditEvent(
+                            row.getObject("event_id", UUID.class),
+                            row.getLong("user_id"),
+                            CreditEvent.Type.valueOf(row.getString("type")),
+                            row.getDouble("amount"),
+                            row.getDouble("credits"),
+                            row.getObject("occurred_at", Instant.class)), limit))));
+        }
+        // Takes the earliest head each time, which never reorders a shard's own events
+        List<CreditEvent> events = new ArrayList<>();
+        while (events.size() < limit) {
+            Deque<CreditEvent> next = shards.stream()
+                    .filter(queue -> !queue.isEmpty())
+                    .min(Comparator.comparing(queue -> queue.peekFirst().getTimestamp()))
+                    .orElse(null);
+            if (next == null) {
+                break;
+            }
+            events.add(next.pollFirst());
+        }
+        return events;
+    }
+    
+    @Override
+    public long[] pendingByStripe(int stripes) {
+        long[] counts = new long[stripes];
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            shardRouter.runOnShard(shard, () -> jdbcTemplate.query(COUNT_SQL, (RowCallbackHandler) row ->
+                    counts[(int) Math.floorMod(row.getLong("user_id"), (long) stripes)] += row.getLong("events")));
+        }
+        return counts;
+    }
+    
+    @Override
+    public void remove(List<CreditEvent> events) {
+        Map<Integer, List<Object[]>> idsByShard = new LinkedHashMap<>();
+        for (CreditEvent event : events) {
+            idsByShard.computeIfAbsent(shardRouter.shardForId(event.getUserId()), shard -> new ArrayList<>())
+                    .add(new Object[] {event.getId()});
+        }
+        idsByShard.forEach((shard, ids) -> shardRouter.runOnShard(shard, () -> jdbcTemplate.batchUpdate(DELETE_SQL, ids)));
+    }
+}
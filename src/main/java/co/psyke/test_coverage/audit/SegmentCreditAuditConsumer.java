@@ -0,0 +1,127 @@
+package co.psyke.test_coverage.audit;
+
+import co.psyke.test_coverage.config.CreditAuditProperties;
+import co.psyke.test_coverage.stream.CreditEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Appends audited credit changes to memory-mapped segment files, as
+ * {@code event_id,occurred_at,user_id,type,amount,credits} lines.
+ * <p>
+ * Every stripe writes its own sequence of files,
+ * {@code audit-<stripe>-<index>.log}, each mapped at its full
+ * {@code app.audit.segments.size}: an append is a copy into the mapping, the
+ * OS writes it back, and a segment is forced to disk when it is full and on
+ * shutdown. A file's unused tail is left zeroed, so readers stop at the first
+ * NUL byte. A restart continues with a new segment after the last one. A
+ * retried batch can repeat lines; they repeat the event id too, so readers
+ * keep the first line of each id.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.audit.segments", name = "enabled", havingValue = "true")
+public class SegmentCreditAuditConsumer implements CreditAuditConsumer, AutoCloseable {
+    
+    private static final Pattern SEGMENT_NAME = Pattern.compile("audit-(\\d+)-(\\d+)\\.log");
+    
+    private final Path directory;
+    private final int segmentSize;
+    
+    // Each stripe is only ever written from its own thread
+    private final Map<Integer, Segment> segments = new ConcurrentHashMap<>();
+    
+    @Autowired
+    public SegmentCreditAuditConsumer(CreditAuditProperties properties) {
+        this(Path.of(properties.getSegments().getDirectory()),
+                (int) Math.min(properties.getSegments().getSize().toBytes(), Integer.MAX_VALUE));
+    }
+    
+    SegmentCreditAuditConsumer(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't create the credit audit directory " + directory, e);
+        }
+    }
+    
+    @Override
+    public void consume(int stripe, List<CreditEvent> batch) throws IOException {
+        Segment segment = segments.get(stripe);
+        if (segment == null) {
+            segment = open(stripe, nextIndex(stripe));
+        }
+        for (CreditEvent event : batch) {
+            byte[] line = format(event);
+            if (line.length > segment.buffer.remaining()) {
+                if (line.length > segmentSize) {
+                    throw new IllegalStateException("Audit line of " + line.length + " bytes exceeds the segment size");
+                }
+                segment.buffer.force();
+                // A failure here leaves the lines already copied, so the retried batch repeats them with their ids
+                segment = open(stripe, segment.index + 1);
+            }
+            segment.buffer.put(line);
+        }
+    }
+    
+    @Override
+    public void close() {
+        segments.values().forEach(segment -> segment.buffer.force());
+        segments.clear();
+    }
+    
+    Path segmentPath(int stripe, long index) {
+        return directory.resolve("audit-" + stripe + "-" + index + ".log");
+    }
+    
+    private Segment open(int stripe, long index) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(stripe, index),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            Segment segment = new Segment(index, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+            segments.put(stripe, segment);
+            return segment;
+        }
+    }
+    
+    private long nextIndex(int stripe) throws IOException {
+        long next = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches() && Integer.parseInt(matcher.group(1)) == stripe) {
+                    next = Math.max(next, Long.parseLong(matcher.group(2)) + 1);
+                }
+            }
+        }
+        return next;
+    }
+    
+    private static byte[] format(CreditEvent event) {
+        return String.format(Locale.ROOT, "%s,%s,%d,%s,%.2f,%.2f\n", event.getId(), event.getTimestamp(),
+                event.getUserId(), event.getType(), event.getAmount(), event.getCredits())
+                .getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private record Segment(long index, MappedByteBuffer buffer) {
+    }
+}
@@ -0,0 +1,233 @@
+package co.psyke.test_coverage.cache;
+
+import co.psyke.test_coverage.aggregates.CreditAggregates;
+import co.psyke.test_coverage.config.UserChangeProperties;
+import co.psyke.test_coverage.model.User;
+import co.psyke.test_coverage.model.UserChange;
+import co.psyke.test_coverage.replication.ReadRouter;
+import co.psyke.test_coverage.repository.UserChangeRepository;
+import co.psyke.test_coverage.repository.UserRepository;
+import co.psyke.test_coverage.sharding.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps this instance's caches coherent with writes made by other instances
+ * on the same database.
+ * <p>
+ * Every {@code app.changes.poll-interval} the change log of each shard is read
+ * past the last sequence number seen. For each user written by another
+ * instance, the ETag and the read-your-writes mark are dropped and the credit
+ * aggregates are refreshed from the database; this instance's own writes were
+ * applied when they were made. Sequence numbers are taken at insert but become
+ * visible at commit, so a number missing below a visible one is waited for up
+ * to {@code app.changes.gap-timeout} before it is written off as rolled back.
+ * <p>
+ * The positions are taken before any other runner loads its caches, and
+ * polling starts once they are loaded, so no change is overwritten by state
+ * read earlier. A transaction may hold a number below a position and commit
+ * after it was taken, so the numbers missing from the last
+ * {@value #MAX_TRACKED_GAP} below it at that time start out as gaps too.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(prefix = "app.changes", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class UserChangePoller implements ApplicationRunner, AutoCloseable {
+    
+    private static final Logger log = LoggerFactory.getLogger(UserChangePoller.class);
+    
+    // A jump wider than this is an identity restart, not transactions in flight
+    private static final int MAX_TRACKED_GAP = 10_000;
+    
+    @Autowired
+    private UserChangeRepository userChangeRepository;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    @Autowired
+    private ReadRouter readRouter;
+    
+    @Autowired
+    private UserETagCache userETagCache;
+    
+    @Autowired
+    private CreditAggregates creditAggregates;
+    
+    @Autowired
+    private UserChangeProperties properties;
+    
+    private Cursor[] cursors;
+    private ScheduledExecutorService scheduler;
+    
+    @Override
+    public void run(ApplicationArguments args) {
+        cursors = new Cursor[shardRouter.shardCount()];
+        long now = System.nanoTime();
+        for (int shard = 0; shard < cursors.length; shard++) {
+            cursors[shard] = shardRouter.onShard(shard, () -> {
+                long last = userChangeRepository.lastSeq();
+                return Cursor.startingAt(last, userChangeRepository.seqsAfter(last - MAX_TRACKED_GAP), now);
+            });
+        }
+    }
+    
+    // Only once the other runners have loaded their caches, so a poll never races a load of older state
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("user-change-poller")
+                .daemon(true)
+                .factory());
+        long interval = properties.getPollInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::pollQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        long pruneInterval = properties.getPruneInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::pruneQuietly, pruneInterval, pruneInterval, TimeUnit.MILLISECONDS);
+    }
+    
+    /** Applies the changes of other instances committed since the last poll, and returns the users refreshed. */
+    public synchronized int poll() {
+        int refreshed = 0;
+        for (int shard = 0; shard < cursors.length; shard++) {
+            refreshed += poll(shard, cursors[shard]);
+        }
+        return refreshed;
+    }
+    
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+    
+    private int poll(int shard, Cursor cursor) {
+        List<UserChange> changes = shardRouter.onShard(shard,
+                () -> userChangeRepository.since(cursor.position(), properties.getBatchSize()));
+        long now = System.nanoTime();
+        Set<Long> changed = new LinkedHashSet<>();
+        for (UserChange change : changes) {
+            if (cursor.accept(change.getSeq(), now) && !properties.getNodeId().equals(change.getNode())) {
+                changed.add(change.getUserId());
+            }
+        }
+        cursor.advance(now, properties.getGapTimeout().toNanos());
+        if (!changed.isEmpty()) {
+            refresh(shard, changed);
+        }
+        return changed.size();
+    }
+    
+    // Read after the changes committed, so each row is at least as new as the change that named it
+    private void refresh(int shard, Set<Long> ids) {
+        ids.forEach(readRouter::written);
+        Set<Long> missing = new HashSet<>(ids);
+        for (User user : shardRouter.onShard(shard, () -> userRepository.findAllById(ids))) {
+            missing.remove(user.getId());
+            userETagCache.evict(user.getId(), user.getVersion());
+            creditAggregates.updated(user);
+        }
+        // Deleted, or soft deleted
+        for (Long id : missing) {
+            userETagCache.deleted(id);
+            creditAggregates.removed(id);
+        }
+    }
+    
+    private void pollQuietly() {
+        try {
+            int refreshed = poll();
+            if (refreshed > 0) {
+                log.debug("Refreshed {} users changed by other instances", refreshed);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Polling the user change log failed: {}", e.getMessage());
+        }
+    }
+    
+    private void pruneQuietly() {
+        try {
+            Instant before = Instant.now().minus(properties.getRetention());
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                shardRouter.onShard(shard, () -> userChangeRepository.prune(before));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Pruning the user change log failed: {}", e.getMessage());
+        }
+    }
+    
+    /** Read position in the change log of one shard. */
+    static final class Cursor {
+        
+        // Every change up to here was applied or written off; the next read starts after it
+        private long position;
+        // Highest change applied
+        private long highest;
+        // Numbers missing below the highest, with the time they were first noticed
+        private final TreeMap<Long, Long> gaps = new TreeMap<>();
+        
+        Cursor(long position) {
+            this.position = position;
+            this.highest = position;
+        }
+        
+        /** A cursor at {@code last}, waiting for the numbers below it that {@code committed} lacks. */
+        static Cursor startingAt(long last, Collection<Long> committed, long now) {
+            Cursor cursor = new Cursor(last);
+            Set<Long> seen = new HashSet<>(committed);
+            for (long seq = Math.max(last - MAX_TRACKED_GAP, 0) + 1; seq < last; seq++) {
+                if (!seen.contains(seq)) {
+                    cursor.gaps.put(seq, now);
+                }
+            }
+            cursor.position = cursor.gaps.isEmpty() ? last : cursor.gaps.firstKey() - 1;
+            return cursor;
+        }
+        
+        long position() {
+            return position;
+        }
+        
+        /** True the first time a change is seen; a read starting below a gap sees the changes above it again. */
+        boolean accept(long seq, long now) {
+            if (seq > highest) {
+                if (seq - highest - 1 <= MAX_TRACKED_GAP) {
+                    for (long missing = highest + 1; missing < seq; missing++) {
+                        gaps.put(missing, now);
+                    }
+                }
+                highest = seq;
+                return true;
+            }
+            return gaps.remove(seq) != null;
+        }
+        
+        void advance(long now, long gapTimeoutNanos) {
+            gaps.values().removeIf(noticed -> now - noticed >= gapTimeoutNanos);
+            position = gaps.isEmpty() ? highest : gaps.firstKey() - 1;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package co.psyke.test_coverage.cache;
+
+import co.psyke.test_coverage.model.User;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the current strong ETag of every user seen by this instance, so that
+ * conditional reads can be answered with 304 without touching the database.
+ * The tag is a hash of the user state: it changes whenever a field exposed by
+ * the API changes and is identical for identical states.
+ * <p>
+ * Tags are stored after the write or read that produced them, in no particular
+ * order, so each one carries the {@link User#getVersion() version} of the row
+ * it hashes and only ever replaces an older one.
+ */
+@Component
+public class UserETagCache {
+    
+    // Kept for deleted users: ids are never reused, and a read from before the delete must not tag them again
+    private static final Tag DELETED = new Tag(Long.MAX_VALUE, null);
+    
+    private final Map<Long, Tag> tags = new ConcurrentHashMap<>();
+    
+    public String get(Long userId) {
+        Tag cached = userId == null ? null : tags.get(userId);
+        return cached == null ? null : cached.tag();
+    }
+    
+    /**
+     * Caches the tag of a state just written or read, unless a newer version is
+     * already known, and returns it: it is the tag of that state either way.
+     */
+    public String put(User user) {
+        String tag = tagOf(user);
+        if (user.getId() != null) {
+            tags.merge(user.getId(), new Tag(versionOf(user), tag), UserETagCache::newest);
+        }
+        return tag;
+    }
+    
+    // A write whose full state isn't at hand: drops the tag, and any older one arriving later
+    public void evict(Long userId, Long version) {
+        if (userId != null) {
+            tags.merge(userId, new Tag(version == null ? 0 : version, null), UserETagCache::newest);
+        }
+    }
+    
+    public void deleted(Long userId) {
+        if (userId != null) {
+            tags.put(userId, DELETED);
+        }
+    }
+    
+    public void clear() {
+        tags.clear();
+    }
+    
+    /** ETag of the full user representation ({@code GET /api/users/{id}}). */
+    public static String userTag(String tag) {
+        return "\"u-" + tag + "\"";
+    }
+    
+    /** ETag of the credits representation ({@code GET /api/users/{id}/credits}). */
+    public static String creditsTag(String tag) {
+        return "\"c-" + tag + "\"";
+    }
+    
+    /**
+     * Checks an {@code If-None-Match} header against a strong ETag, handling
+     * {@code *}, lists of tags and weak validators (weak comparison, RFC 9110).
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*")) {
+                return true;
+            }
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    // An evicted version can still be filled by a read of that same version
+    private static Tag newest(Tag cached, Tag next) {
+        if (next.version() > cached.version()) {
+            return next;
+        }
+        return next.version() == cached.version() && cached.tag() == null ? next : cached;
+    }
+    
+    private static long versionOf(User user) {
+        return user.getVersion() == null ? 0 : user.getVersion();
+    }
+    
+    static String tagOf(User user) {
+        // No password: it is not part of any representation and must not be derivable from a public tag
+        String state = user.getId() + "|" + user.getUsername() + "|" + user.getEmail() + "|"
+                + user.getFullName() + "|" + user.getActive() + "|"
+                + user.getCredits() + "|" + user.getReserved();
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(state.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    private record Tag(long version, String tag) {
+    }
+}
@@ -0,0 +1,167 @@
+package co.psyke.test_coverage.concurrency;
+
+import co.psyke.test_coverage.config.ConcurrencyLimitProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounds the number of requests in flight in front of the service layer and
+ * adapts the bound to the latency it observes, in the style of a gradient
+ * limiter.
+ * <p>
+ * Latencies are averaged over a short window and compared with a slowly moving
+ * long-term average. While the short-term latency stays within
+ * {@code tolerance} of the baseline the limit grows by roughly its square root
+ * per window; when requests start queueing in the pool or in H2 the latency
+ * rises and the limit shrinks proportionally. Requests above the limit are
+ * rejected immediately instead of queueing, and lower priorities only get a
+ * share of the limit so that they are rejected first.
+ */
+@Component
+public class AdaptiveConcurrencyLimiter {
+    
+    private final ConcurrencyLimitProperties properties;
+    private final long windowNanos;
+    
+    private final AtomicInteger inflight = new AtomicInteger();
+    private volatile double limit;
+    
+    // Current sampling window
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final LongAdder windowRttSum = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final AtomicInteger windowMaxInflight = new AtomicInteger();
+    private volatile double longRtt;
+    
+    private final Map<Priority, LongAdder> rejected = new EnumMap<>(Priority.class);
+    
+    @Autowired
+    public AdaptiveConcurrencyLimiter(ConcurrencyLimitProperties properties) {
+        this.properties = properties;
+        this.windowNanos = properties.getWindow().toNanos();
+        this.limit = properties.getInitialLimit();
+        for (Priority priority : Priority.values()) {
+            rejected.put(priority, new LongAdder());
+        }
+    }
+    
+    /**
+     * Admits a request if the limit allows it for this priority.
+     *
+     * @return the permit to release once the request is done, or null if the request must be rejected
+     */
+    public Permit tryAcquire(Priority priority) {
+        if (!properties.isEnabled()) {
+            return new Permit(priority, false);
+        }
+        
+        int allowed = Math.max(1, (int) (limit * share(priority)));
+        while (true) {
+            int current = inflight.get();
+            if (current >= allowed) {
+                rejected.get(priority).increment();
+                return null;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                windowMaxInflight.accumulateAndGet(current + 1, Math::max);
+                return new Permit(priority, true);
+            }
+        }
+    }
+    
+    public int getLimit() {
+        return (int) limit;
+    }
+    
+    public int getInflight() {
+        return inflight.get();
+    }
+    
+    public long getRejected(Priority priority) {
+        return rejected.get(priority).sum();
+    }
+    
+    private double share(Priority priority) {
+        return switch (priority) {
+            case CRITICAL -> 1.0;
+            case NORMAL -> properties.getNormalShare();
+            case BULK -> properties.getBulkShare();
+        };
+    }
+    
+    void onSample(Priority priority, long rttNanos, long nowNanos) {
+        // Bulk requests are long by nature and would only blur the latency signal
+        if (priority != Priority.BULK) {
+            windowRttSum.add(rttNanos);
+            windowSamples.increment();
+        }
+        
+        long start = windowStart.get();
+        if (nowNanos - start >= windowNanos && windowStart.compareAndSet(start, nowNanos)) {
+            long samples = windowSamples.sumThenReset();
+            long rttSum = windowRttSum.sumThenReset();
+            int maxInflight = windowMaxInflight.getAndSet(inflight.get());
+            if (samples > 0) {
+                updateLimit((double) rttSum / samples, maxInflight);
+            }
+        }
+    }
+    
+    // Only ever called by the single thread that closed the window
+    private void updateLimit(double shortRtt, int maxInflight) {
+        if (longRtt == 0) {
+            longRtt = shortRtt;
+            return;
+        }
+        longRtt = longRtt * 0.95 + shortRtt * 0.05;
+        // After a latency spike the baseline must not stay inflated for long
+        if (longRtt > 2 * shortRtt) {
+            longRtt = longRtt * 0.9 + shortRtt * 0.1;
+        }
+        
+        double current = limit;
+        double gradient = Math.max(0.5, Math.min(1.0, properties.getTolerance() * longRtt / shortRtt));
+        double next = current * gradient + Math.sqrt(current);
+        // Don't grow a limit the traffic isn't using, it would no longer protect anything
+        if (next > current && maxInflight < current / 2) {
+            return;
+        }
+        next = current * (1 - properties.getSmoothing()) + next * properties.getSmoothing();
+        limit = Math.max(properties.getMinLimit(), Math.min(properties.getMaxLimit(), next));
+    }
+    
+    public final class Permit {
+        
+        private final Priority priority;
+        private final boolean counted;
+        private final long startNanos = System.nanoTime();
+        private volatile boolean released;
+        
+        private Permit(Priority priority, boolean counted) {
+            this.priority = priority;
+            this.counted = counted;
+        }
+        
+        /**
+         * Returns the slot; {@code sample} says whether the request latency is
+         * meaningful (failed requests that never reached the service are not).
+         */
+        public void release(boolean sample) {
+            if (!counted || released) {
+                return;
+            }
+            released = true;
+            inflight.decrementAndGet();
+            long now = System.nanoTime();
+            if (sample) {
+                onSample(priority, now - startNanos, now);
+            }
+        }
+    }
+}
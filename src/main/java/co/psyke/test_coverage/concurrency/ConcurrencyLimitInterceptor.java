@@ -0,0 +1,72 @@
+package co.psyke.test_coverage.concurrency;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+/**
+ * Admits requests to {@link Prioritized} endpoints through the
+ * {@link AdaptiveConcurrencyLimiter} and answers 503 with {@code Retry-After}
+ * straight away when the service is saturated, instead of letting the request
+ * wait for a pool connection. The slot is held until the response completes,
+ * including the async dispatches of streamed exports.
+ */
+@Component
+public class ConcurrencyLimitInterceptor implements AsyncHandlerInterceptor {
+    
+    private static final String PERMIT_ATTRIBUTE = ConcurrencyLimitInterceptor.class.getName() + ".permit";
+    
+    @Autowired
+    private AdaptiveConcurrencyLimiter limiter;
+    
+    public ConcurrencyLimitInterceptor() {
+    }
+    
+    ConcurrencyLimitInterceptor(AdaptiveConcurrencyLimiter limiter) {
+        this.limiter = limiter;
+    }
+    
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!(handler instanceof HandlerMethod method)) {
+            return true;
+        }
+        Prioritized prioritized = method.getMethodAnnotation(Prioritized.class);
+        if (prioritized == null || request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire(prioritized.value());
+        if (permit != null) {
+            request.setAttribute(PERMIT_ATTRIBUTE, permit);
+            return true;
+        }
+        
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"message\":\"Service overloaded, retry later\"}");
+        return false;
+    }
+    
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+            Exception ex) {
+        if (request.isAsyncStarted()) {
+            // Released by the async dispatch that completes the response
+            return;
+        }
+        Object permit = request.getAttribute(PERMIT_ATTRIBUTE);
+        if (permit instanceof AdaptiveConcurrencyLimiter.Permit held) {
+            request.removeAttribute(PERMIT_ATTRIBUTE);
+            held.release(ex == null && response.getStatus() < 500);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package co.psyke.test_coverage.concurrency;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * Publishes the current limit, the requests in flight and the rejections per
+ * priority under {@code users.concurrency.*}.
+ */
+@Component
+public class ConcurrencyLimitMetrics implements MeterBinder {
+    
+    @Autowired
+    private AdaptiveConcurrencyLimiter limiter;
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("users.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current adaptive concurrency limit")
+                .register(registry);
+        Gauge.builder("users.concurrency.inflight", limiter, AdaptiveConcurrencyLimiter::getInflight)
+                .description("Requests currently admitted")
+                .register(registry);
+        for (Priority priority : Priority.values()) {
+            FunctionCounter.builder("users.concurrency.rejected", limiter, l -> l.getRejected(priority))
+                    .description("Requests shed with 503")
+                    .tag("priority", priority.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+        }
+    }
+}
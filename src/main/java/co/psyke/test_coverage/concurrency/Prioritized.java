@@ -0,0 +1,17 @@
+package co.psyke.test_coverage.concurrency;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a controller endpoint as admitted through {@link ConcurrencyLimitInterceptor}
+ * with the given priority.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Prioritized {
+    
+    Priority value() default Priority.NORMAL;
+}
@@ -0,0 +1,15 @@
+package co.psyke.test_coverage.concurrency;
+
+/**
+ * Admission classes of {@link AdaptiveConcurrencyLimiter}. When the service is
+ * saturated, bulk work is shed first and credit operations last.
+ */
+public enum Priority {
+    
+    // Credit spends and top-ups
+    CRITICAL,
+    // Lookups and single-user writes
+    NORMAL,
+    // Full scans, imports and exports
+    BULK
+}
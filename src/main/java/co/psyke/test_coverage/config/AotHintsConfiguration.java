@@ -0,0 +1,31 @@
+package co.psyke.test_coverage.config;
+
+import co.psyke.test_coverage.aggregates.CreditAggregates;
+import co.psyke.test_coverage.controller.UserController;
+import co.psyke.test_coverage.model.CreditHold;
+import co.psyke.test_coverage.model.CreditJob;
+import co.psyke.test_coverage.model.User;
+import co.psyke.test_coverage.service.ImportResult;
+import co.psyke.test_coverage.stream.CreditEvent;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Reflection hints for a native image, for the types that Jackson reads or
+ * writes but AOT processing can't infer: bodies of {@code ResponseEntity<?>}
+ * handlers, server-sent events and the import/export streams. Properties
+ * classes, entities and typed handler signatures are covered by Spring itself.
+ */
+@Configuration(proxyBeanMethods = false)
+@RegisterReflectionForBinding({
+    User.class,
+    CreditHold.class,
+    CreditJob.class,
+    CreditEvent.class,
+    CreditAggregates.Ranked.class,
+    ImportResult.class,
+    UserController.BulkDeleteResponse.class,
+    UserController.ErrorResponse.class
+})
+public class AotHintsConfiguration {
+}
@@ -0,0 +1,32 @@
+package co.psyke.test_coverage.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.concurrency")
+public class ConcurrencyLimitProperties {
+    
+    private boolean enabled = true;
+    
+    private int initialLimit = 50;
+    private int minLimit = 5;
+    private int maxLimit = 500;
+    
+    // Latency samples are aggregated over this window before the limit is recomputed
+    private Duration window = Duration.ofMillis(100);
+    
+    // Short-term latency may exceed the long-term baseline by this factor before the limit shrinks
+    private double tolerance = 1.5;
+    
+    // Weight of a newly computed limit against the current one
+    private double smoothing = 0.2;
+    
+    // Share of the limit each priority may fill; credit operations can always use all of it
+    private double normalShare = 0.9;
+    private double bulkShare = 0.5;
+}
@@ -0,0 +1,20 @@
+package co.psyke.test_coverage.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.aggregates")
+public class CreditAggregateProperties {
+    
+    // Lower bounds of the distribution buckets after the first one, which starts at 0
+    private List<Double> bucketBounds = new ArrayList<>(List.of(100.0, 500.0, 1000.0, 2500.0, 5000.0, 10000.0));
+    
+    // Largest N accepted by the top-N endpoint
+    private int maxTop = 100;
+}
@@ -0,0 +1,62 @@
+package co.psyke.test_coverage.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.audit")
+public class CreditAuditProperties {
+    
+    private boolean enabled = true;
+    
+    // Ring buffers, each drained by its own thread; a user always maps to the same one
+    private int stripes = 4;
+    
+    // Events per ring, rounded up to a power of two
+    private int bufferSize = 4096;
+    
+    // Most events handed to the consumers at once
+    private int batchSize = 256;
+    
+    // How long a credit operation waits for room in a full ring before its event is spilled
+    private Duration offerTimeout = Duration.ofSeconds(5);
+    
+    // Wait before redelivering a batch a consumer failed on, doubled up to a second
+    private Duration retryBackoff = Duration.ofMillis(50);
+    
+    // How long shutdown waits for the queued events to be delivered
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+    
+    private Jdbc jdbc = new Jdbc();
+    
+    private Segments segments = new Segments();
+    
+    private Spill spill = new Spill();
+    
+    @Data
+    public static class Jdbc {
+        // Appends every event to the credit_audit table of the user's shard
+        private boolean enabled = true;
+    }
+    
+    @Data
+    public static class Segments {
+        // Appends every event to memory-mapped segment files, one sequence of files per stripe
+        private boolean enabled = false;
+        private String directory = "./data/audit";
+        private DataSize size = DataSize.ofMegabytes(16);
+    }
+    
+    @Data
+    public static class Spill {
+        // Stores events that found their ring full in the credit_audit_spill table, instead of dropping them
+        private boolean enabled = true;
+        // How often spilled events are moved back into the rings
+        private Duration interval = Duration.ofSeconds(1);
+    }
+}
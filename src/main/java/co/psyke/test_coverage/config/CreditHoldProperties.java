@@ -0,0 +1,21 @@
+package co.psyke.test_coverage.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.holds")
+public class CreditHoldProperties {
+    
+    // Used when the reservation doesn't ask for a TTL; longer requests are capped at maxTtl
+    private Duration defaultTtl = Duration.ofMinutes(5);
+    private Duration maxTtl = Duration.ofHours(1);
+    
+    // Expiry granularity and number of slots of the time wheel
+    private Duration tick = Duration.ofSeconds(1);
+    private int wheelSize = 512;
+}
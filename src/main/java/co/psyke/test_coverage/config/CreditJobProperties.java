@@ -0,0 +1,26 @@
+package co.psyke.test_coverage.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.jobs")
+public class CreditJobProperties {
+    
+    // Users per chunk, each chunk being one UPDATE and one transaction
+    private int chunkSize = 1000;
+    
+    // Chunks processed at the same time by a job
+    private int parallelism = 4;
+    
+    // Upper bound on users updated per second by each job, 0 for no bound
+    private int maxUsersPerSecond = 0;
+    
+    // Chunks wait while the requests in flight exceed this share of the adaptive concurrency limit
+    private double yieldAbove = 0.8;
+    private Duration yieldPause = Duration.ofMillis(50);
+}
@@ -0,0 +1,22 @@
+package co.psyke.test_coverage.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.credits.stream")
+public class CreditStreamProperties {
+    
+    // Events buffered per subscriber before it is considered slow and dropped
+    private int bufferSize = 256;
+    
+    // Lifetime of an SSE connection, clients are expected to reconnect
+    private Duration timeout = Duration.ofMinutes(30);
+    
+    // Idle interval after which a comment line is sent to keep proxies from closing the stream
+    private Duration heartbeat = Duration.ofSeconds(15);
+}
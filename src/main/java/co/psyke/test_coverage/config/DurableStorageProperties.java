@@ -0,0 +1,18 @@
+package co.psyke.test_coverage.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.durable")
+public class DurableStorageProperties {
+    
+    private boolean enabled = false;
+    
+    // How much chunk log reopening may have to scan after a crash; commits are persisted by the H2 write delay regardless
+    private Duration checkpointInterval = Duration.ofSeconds(30);
+}
@@ -0,0 +1,38 @@
+package co.psyke.test_coverage.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.rate-limit")
+public class RateLimitProperties {
+    
+    private boolean enabled = true;
+    
+    // Upper bound on the number of per-user buckets kept in memory
+    private int maxTrackedKeys = 100_000;
+    
+    // Shared by every request to a rate limited endpoint
+    private Limit global = new Limit(2000, 1000);
+    
+    // Applied per user (path variable) of a rate limited endpoint
+    private Limit perUser = new Limit(20, 10);
+    
+    @Data
+    public static class Limit {
+        // Requests that can be made in a burst
+        private int capacity;
+        // Sustained requests per second
+        private double refillPerSecond;
+        
+        public Limit() {
+        }
+        
+        public Limit(int capacity, double refillPerSecond) {
+            this.capacity = capacity;
+            this.refillPerSecond = refillPerSecond;
+        }
+    }
+}
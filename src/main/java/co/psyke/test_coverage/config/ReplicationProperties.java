@@ -0,0 +1,32 @@
+package co.psyke.test_coverage.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.replication")
+public class ReplicationProperties {
+    
+    private boolean enabled = false;
+    
+    private List<ReplicaConfig> replicas = new ArrayList<>();
+    
+    // Replicas further behind the primary than this are skipped
+    private Duration maxLag = Duration.ofSeconds(1);
+    
+    // How often the embedded replicas are refreshed from the primary
+    private Duration syncInterval = Duration.ofMillis(200);
+    
+    @Data
+    public static class ReplicaConfig {
+        private String url;
+        private String username;
+        private String password;
+    }
+}
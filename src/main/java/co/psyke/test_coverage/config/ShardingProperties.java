@@ -0,0 +1,26 @@
+package co.psyke.test_coverage.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.sharding")
+public class ShardingProperties {
+    
+    private boolean enabled = false;
+    
+    // One entry per shard, the first one also hosts the username/email directory
+    private List<ShardConfig> shards = new ArrayList<>();
+    
+    @Data
+    public static class ShardConfig {
+        private String url;
+        private String username;
+        private String password;
+    }
+}
@@ -0,0 +1,33 @@
+package co.psyke.test_coverage.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.changes")
+public class UserChangeProperties {
+    
+    // Records every user write in user_changes and follows the writes of the other instances
+    private boolean enabled = true;
+    
+    // Tags the changes written here, which this instance has already applied; unique per instance
+    private String nodeId = UUID.randomUUID().toString();
+    
+    private Duration pollInterval = Duration.ofMillis(200);
+    
+    // Most changes read per shard and poll
+    private int batchSize = 500;
+    
+    // How long a missing sequence number is waited for: a transaction that took it may not have committed yet
+    private Duration gapTimeout = Duration.ofSeconds(5);
+    
+    // Changes older than this are deleted; an instance stopped for longer rebuilds its caches on start anyway
+    private Duration retention = Duration.ofHours(1);
+    
+    private Duration pruneInterval = Duration.ofMinutes(1);
+}
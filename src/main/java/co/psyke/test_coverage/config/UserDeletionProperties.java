@@ -0,0 +1,24 @@
+package co.psyke.test_coverage.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.deletion")
+public class UserDeletionProperties {
+    
+    // Deletes only mark the row, a background purger removes it later
+    private boolean soft = false;
+    
+    // Users per statement of a bulk delete
+    private int chunkSize = 1000;
+    
+    // Soft mode: how often the purger runs, rows per purge transaction and how long deleted rows are kept
+    private Duration purgeInterval = Duration.ofSeconds(30);
+    private int purgeBatchSize = 1000;
+    private Duration retention = Duration.ZERO;
+}
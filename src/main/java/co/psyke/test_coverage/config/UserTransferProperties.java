@@ -0,0 +1,20 @@
+package co.psyke.test_coverage.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.transfer")
+public class UserTransferProperties {
+    
+    // Rows inserted per JDBC batch (and per transaction) during import
+    private int batchSize = 500;
+    
+    // Rows fetched per round trip by the export cursor
+    private int fetchSize = 500;
+    
+    // Import errors listed in the response; further errors are only counted
+    private int maxReportedErrors = 100;
+}
@@ -0,0 +1,47 @@
+package co.psyke.test_coverage.controller;
+
+import co.psyke.test_coverage.aggregates.CreditAggregates;
+import co.psyke.test_coverage.concurrency.Prioritized;
+import co.psyke.test_coverage.concurrency.Priority;
+import co.psyke.test_coverage.config.CreditAggregateProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/users/credits")
+public class CreditAggregatesController {
+    
+    @Autowired
+    private CreditAggregates creditAggregates;
+    
+    @Autowired
+    private CreditAggregateProperties properties;
+    
+    // Total credits and user counts
+    @Prioritized(Priority.NORMAL)
+    @GetMapping("/summary")
+    public ResponseEntity<CreditAggregates.Summary> getSummary() {
+        return ResponseEntity.ok(creditAggregates.summary());
+    }
+    
+    // Number of users per credit range
+    @Prioritized(Priority.NORMAL)
+    @GetMapping("/distribution")
+    public ResponseEntity<List<CreditAggregates.Bucket>> getDistribution() {
+        return ResponseEntity.ok(creditAggregates.distribution());
+    }
+    
+    // Users holding the most credits
+    @Prioritized(Priority.NORMAL)
+    @GetMapping("/top")
+    public ResponseEntity<?> getTop(@RequestParam(defaultValue = "10") int limit) {
+        if (limit < 1 || limit > properties.getMaxTop()) {
+            return ResponseEntity.badRequest()
+                    .body(new UserController.ErrorResponse("Limit must be between 1 and " + properties.getMaxTop()));
+        }
+        return ResponseEntity.ok(creditAggregates.top(limit));
+    }
+}
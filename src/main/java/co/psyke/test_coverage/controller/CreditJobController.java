@@ -0,0 +1,100 @@
+package co.psyke.test_coverage.controller;
+
+import co.psyke.test_coverage.concurrency.Prioritized;
+import co.psyke.test_coverage.concurrency.Priority;
+import co.psyke.test_coverage.jobs.CreditJobService;
+import co.psyke.test_coverage.model.CreditJob;
+import co.psyke.test_coverage.model.CreditJobChunk;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/credit-jobs")
+public class CreditJobController {
+    
+    @Autowired
+    private CreditJobService creditJobService;
+    
+    // Start: planned synchronously, applied in the background
+    @Prioritized(Priority.BULK)
+    @PostMapping
+    public ResponseEntity<?> startJob(@RequestBody StartCreditJobRequest request) {
+        try {
+            CreditJob job = creditJobService.startJob(request.getOperation(), request.getAmount(),
+                    request.getActiveOnly() == null || request.getActiveOnly());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new UserController.ErrorResponse(e.getMessage()));
+        }
+    }
+    
+    // Progress and overall throughput
+    @Prioritized(Priority.NORMAL)
+    @GetMapping("/{id}")
+    public ResponseEntity<CreditJobService.Progress> getProgress(@PathVariable Long id) {
+        return creditJobService.getProgress(id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+    
+    // Per-chunk counts and throughput
+    @Prioritized(Priority.BULK)
+    @GetMapping("/{id}/chunks")
+    public ResponseEntity<List<CreditJobChunk>> getChunks(@PathVariable Long id) {
+        List<CreditJobChunk> chunks = creditJobService.getChunks(id);
+        if (chunks.isEmpty() && creditJobService.getProgress(id).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(chunks);
+    }
+    
+    // Resume a failed job from its last completed chunks
+    @Prioritized(Priority.BULK)
+    @PostMapping("/{id}/resume")
+    public ResponseEntity<?> resumeJob(@PathVariable Long id) {
+        try {
+            return creditJobService.resumeJob(id)
+                    .<ResponseEntity<?>>map(job -> ResponseEntity.status(HttpStatus.ACCEPTED).body(job))
+                    .orElseGet(() -> ResponseEntity.notFound().build());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new UserController.ErrorResponse(e.getMessage()));
+        }
+    }
+    
+    // Helper classes
+    public static class StartCreditJobRequest {
+        private CreditJob.Operation operation;
+        private Double amount;
+        private Boolean activeOnly;
+        
+        public StartCreditJobRequest() {}
+        
+        public CreditJob.Operation getOperation() {
+            return operation;
+        }
+        
+        public void setOperation(CreditJob.Operation operation) {
+            this.operation = operation;
+        }
+        
+        public Double getAmount() {
+            return amount;
+        }
+        
+        public void setAmount(Double amount) {
+            this.amount = amount;
+        }
+        
+        public Boolean getActiveOnly() {
+            return activeOnly;
+        }
+        
+        public void setActiveOnly(Boolean activeOnly) {
+            this.activeOnly = activeOnly;
+        }
+    }
+}
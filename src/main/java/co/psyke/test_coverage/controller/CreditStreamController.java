@@ -0,0 +1,78 @@
+package co.psyke.test_coverage.controller;
+
+import co.psyke.test_coverage.config.CreditStreamProperties;
+import co.psyke.test_coverage.service.UserService;
+import co.psyke.test_coverage.stream.CreditEvent;
+import co.psyke.test_coverage.stream.CreditEventBroadcaster;
+import co.psyke.test_coverage.stream.CreditEventSink;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/api/users")
+public class CreditStreamController {
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private CreditEventBroadcaster broadcaster;
+    
+    @Autowired
+    private CreditStreamProperties properties;
+    
+    // Stream of credit changes for every user
+    @GetMapping(value = "/credits/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAllCredits() {
+        return subscribe(null);
+    }
+    
+    // Stream of credit changes for one user
+    @GetMapping(value = "/{id}/credits/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamCredits(@PathVariable Long id) {
+        if (!userService.userExists(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(subscribe(id));
+    }
+    
+    private SseEmitter subscribe(Long userId) {
+        SseEmitter emitter = new SseEmitter(properties.getTimeout().toMillis());
+        CreditEventBroadcaster.Subscription subscription = broadcaster.subscribe(userId, new SseEmitterSink(emitter));
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(subscription::cancel);
+        emitter.onError(e -> subscription.cancel());
+        return emitter;
+    }
+    
+    private static class SseEmitterSink implements CreditEventSink {
+        
+        private final SseEmitter emitter;
+        
+        SseEmitterSink(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+        
+        @Override
+        public void send(CreditEvent event) throws IOException {
+            emitter.send(SseEmitter.event()
+                    .name("credits")
+                    .data(event, MediaType.APPLICATION_JSON));
+        }
+        
+        @Override
+        public void heartbeat() throws IOException {
+            emitter.send(SseEmitter.event().comment("keep-alive"));
+        }
+        
+        @Override
+        public void close() {
+            emitter.complete();
+        }
+    }
+}
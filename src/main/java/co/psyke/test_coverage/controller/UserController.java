@@ -1,12 +1,20 @@
 package co.psyke.test_coverage.controller;
 
+import co.psyke.test_coverage.cache.UserETagCache;
+import co.psyke.test_coverage.concurrency.Prioritized;
+import co.psyke.test_coverage.concurrency.Priority;
+import co.psyke.test_coverage.exception.HoldNotFoundException;
+import co.psyke.test_coverage.model.CreditHold;
 import co.psyke.test_coverage.model.User;
+import co.psyke.test_coverage.ratelimit.RateLimited;
 import co.psyke.test_coverage.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,7 +25,11 @@ public class UserController {
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private UserETagCache userETagCache;
+    
     // Create
+    @Prioritized(Priority.NORMAL)
     @PostMapping
     public ResponseEntity<User> createUser(@RequestBody User user) {
         User createdUser = userService.createUser(user);
@@ -25,6 +37,7 @@ public class UserController {
     }
     
     // Read all
+    @Prioritized(Priority.BULK)
     @GetMapping
     public ResponseEntity<List<User>> getAllUsers() {
         List<User> users = userService.getAllUsers();
@@ -32,14 +45,30 @@ public class UserController {
     }
     
     // Read by ID
+    @Prioritized(Priority.NORMAL)
+    @RateLimited
     @GetMapping("/{id}")
-    public ResponseEntity<User> getUserById(@PathVariable Long id) {
+    public ResponseEntity<User> getUserById(@PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String cachedTag = userETagCache.get(id);
+        if (cachedTag != null && UserETagCache.matches(ifNoneMatch, UserETagCache.userTag(cachedTag))) {
+            return notModified(UserETagCache.userTag(cachedTag));
+        }
+        
         Optional<User> user = userService.getUserById(id);
-        return user.map(ResponseEntity::ok)
+        return user.map(found -> {
+                       String etag = UserETagCache.userTag(userETagCache.put(found));
+                       if (UserETagCache.matches(ifNoneMatch, etag)) {
+                           return this.<User>notModified(etag);
+                       }
+                       return ResponseEntity.ok().eTag(etag).body(found);
+                   })
                    .orElseGet(() -> ResponseEntity.notFound().build());
     }
     
     // Read by username
+    @Prioritized(Priority.NORMAL)
+    @RateLimited(key = "username")
     @GetMapping("/username/{username}")
     public ResponseEntity<User> getUserByUsername(@PathVariable String username) {
         Optional<User> user = userService.getUserByUsername(username);
@@ -48,6 +77,8 @@ public class UserController {
     }
     
     // Read by email
+    @Prioritized(Priority.NORMAL)
+    @RateLimited(key = "email")
     @GetMapping("/email/{email}")
     public ResponseEntity<User> getUserByEmail(@PathVariable String email) {
         Optional<User> user = userService.getUserByEmail(email);
@@ -56,6 +87,7 @@ public class UserController {
     }
     
     // Update
+    @Prioritized(Priority.NORMAL)
     @PutMapping("/{id}")
     public ResponseEntity<User> updateUser(@PathVariable Long id, @RequestBody User userDetails) {
         try {
@@ -67,26 +99,53 @@ public class UserController {
     }
     
     // Delete
+    @Prioritized(Priority.NORMAL)
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteUser(@PathVariable Long id) {
-        if (userService.userExists(id)) {
-            userService.deleteUser(id);
+        if (userService.deleteUser(id)) {
             return ResponseEntity.noContent().build();
         }
         return ResponseEntity.notFound().build();
     }
     
+    // Bulk delete by ids and/or filters
+    @Prioritized(Priority.BULK)
+    @DeleteMapping
+    public ResponseEntity<?> deleteUsers(@RequestBody BulkDeleteRequest request) {
+        try {
+            long deleted = userService.deleteUsers(request.getIds(), request.getActive(), request.getMaxCredits());
+            return ResponseEntity.ok(new BulkDeleteResponse(deleted));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ErrorResponse(e.getMessage()));
+        }
+    }
+    
     // Credits Endpoints
+    @Prioritized(Priority.NORMAL)
+    @RateLimited
     @GetMapping("/{id}/credits")
-    public ResponseEntity<CreditsResponse> getCredits(@PathVariable Long id) {
-        try {
-            Double credits = userService.getCredits(id);
-            return ResponseEntity.ok(new CreditsResponse(id, credits));
-        } catch (RuntimeException e) {
-            return ResponseEntity.notFound().build();
+    public ResponseEntity<CreditsResponse> getCredits(@PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // Taken before the read: if a write races in, the client just re-downloads next time
+        String cachedTag = userETagCache.get(id);
+        if (cachedTag != null && UserETagCache.matches(ifNoneMatch, UserETagCache.creditsTag(cachedTag))) {
+            return notModified(UserETagCache.creditsTag(cachedTag));
         }
+        
+        // Tagged from the state actually returned, like getUserById, so the first read already gets an ETag
+        Optional<User> user = userService.getUserById(id);
+        return user.map(found -> {
+                       String etag = UserETagCache.creditsTag(userETagCache.put(found));
+                       if (UserETagCache.matches(ifNoneMatch, etag)) {
+                           return this.<CreditsResponse>notModified(etag);
+                       }
+                       return ResponseEntity.ok().eTag(etag).body(new CreditsResponse(id, found.getCredits()));
+                   })
+                   .orElseGet(() -> ResponseEntity.notFound().build());
     }
     
+    @Prioritized(Priority.CRITICAL)
+    @RateLimited
     @PostMapping("/{id}/spend")
     public ResponseEntity<?> spendCredits(@PathVariable Long id, @RequestBody SpendCreditsRequest request) {
         try {
@@ -97,6 +156,8 @@ public class UserController {
         }
     }
     
+    @Prioritized(Priority.CRITICAL)
+    @RateLimited
     @PostMapping("/{id}/add-credits")
     public ResponseEntity<?> addCredits(@PathVariable Long id, @RequestBody SpendCreditsRequest request) {
         try {
@@ -107,6 +168,52 @@ public class UserController {
         }
     }
     
+    // Credit Holds: reserve now, then capture or release; unclaimed holds expire after their TTL
+    @Prioritized(Priority.CRITICAL)
+    @RateLimited
+    @PostMapping("/{id}/holds")
+    public ResponseEntity<?> reserveCredits(@PathVariable Long id, @RequestBody ReserveCreditsRequest request) {
+        try {
+            Duration ttl = request.getTtlSeconds() == null ? null : Duration.ofSeconds(request.getTtlSeconds());
+            CreditHold hold = userService.reserveCredits(id, request.getAmount(), ttl);
+            return ResponseEntity.status(HttpStatus.CREATED).body(hold);
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ErrorResponse(e.getMessage()));
+        }
+    }
+    
+    @Prioritized(Priority.CRITICAL)
+    @RateLimited
+    @PostMapping("/{id}/holds/{holdId}/capture")
+    public ResponseEntity<?> captureHold(@PathVariable Long id, @PathVariable Long holdId) {
+        try {
+            User user = userService.captureHold(id, holdId);
+            return ResponseEntity.ok(new CreditsResponse(id, user.getCredits()));
+        } catch (HoldNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorResponse(e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ErrorResponse(e.getMessage()));
+        }
+    }
+    
+    @Prioritized(Priority.CRITICAL)
+    @RateLimited
+    @DeleteMapping("/{id}/holds/{holdId}")
+    public ResponseEntity<?> releaseHold(@PathVariable Long id, @PathVariable Long holdId) {
+        try {
+            userService.releaseHold(id, holdId);
+            return ResponseEntity.noContent().build();
+        } catch (HoldNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorResponse(e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ErrorResponse(e.getMessage()));
+        }
+    }
+    
+    private <T> ResponseEntity<T> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+    }
+    
     // Helper classes
     public static class CreditsResponse {
         private Long userId;
@@ -140,6 +247,73 @@ public class UserController {
         }
     }
     
+    public static class ReserveCreditsRequest {
+        private Double amount;
+        private Long ttlSeconds;
+        
+        public ReserveCreditsRequest() {}
+        
+        public Double getAmount() {
+            return amount;
+        }
+        
+        public void setAmount(Double amount) {
+            this.amount = amount;
+        }
+        
+        public Long getTtlSeconds() {
+            return ttlSeconds;
+        }
+        
+        public void setTtlSeconds(Long ttlSeconds) {
+            this.ttlSeconds = ttlSeconds;
+        }
+    }
+    
+    public static class BulkDeleteRequest {
+        private List<Long> ids;
+        private Boolean active;
+        private Double maxCredits;
+        
+        public BulkDeleteRequest() {}
+        
+        public List<Long> getIds() {
+            return ids;
+        }
+        
+        public void setIds(List<Long> ids) {
+            this.ids = ids;
+        }
+        
+        public Boolean getActive() {
+            return active;
+        }
+        
+        public void setActive(Boolean active) {
+            this.active = active;
+        }
+        
+        public Double getMaxCredits() {
+            return maxCredits;
+        }
+        
+        public void setMaxCredits(Double maxCredits) {
+            this.maxCredits = maxCredits;
+        }
+    }
+    
+    public static class BulkDeleteResponse {
+        private long deleted;
+        
+        public BulkDeleteResponse(long deleted) {
+            this.deleted = deleted;
+        }
+        
+        public long getDeleted() {
+            return deleted;
+        }
+    }
+    
     public static class ErrorResponse {
         private String message;
         
@@ -0,0 +1,62 @@
+package co.psyke.test_coverage.controller;
+
+import co.psyke.test_coverage.concurrency.Prioritized;
+import co.psyke.test_coverage.concurrency.Priority;
+import co.psyke.test_coverage.service.ImportResult;
+import co.psyke.test_coverage.service.UserFormat;
+import co.psyke.test_coverage.service.UserTransferService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+@RestController
+@RequestMapping("/api/users")
+public class UserTransferController {
+    
+    @Autowired
+    private UserTransferService userTransferService;
+    
+    // Bulk import, text/csv with a header line or application/x-ndjson
+    @Prioritized(Priority.BULK)
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<?> importUsers(HttpServletRequest request) throws IOException {
+        try (ReadableByteChannel channel = Channels.newChannel(request.getInputStream())) {
+            UserFormat format = UserFormat.fromContentType(request.getContentType());
+            ImportResult result = userTransferService.importUsers(channel, format);
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new UserController.ErrorResponse(e.getMessage()));
+        }
+    }
+    
+    // Bulk export, streamed straight from a database cursor; passwords only on request
+    @Prioritized(Priority.BULK)
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportUsers(@RequestParam(defaultValue = "ndjson") String format,
+                                                             @RequestParam(defaultValue = "false") boolean includePasswords) {
+        UserFormat userFormat;
+        try {
+            userFormat = UserFormat.fromName(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        StreamingResponseBody body = out -> {
+            WritableByteChannel channel = Channels.newChannel(out);
+            userTransferService.exportUsers(channel, userFormat, includePasswords);
+        };
+        return ResponseEntity.ok()
+                .contentType(userFormat.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users." + userFormat.getExtension() + "\"")
+                .body(body);
+    }
+}
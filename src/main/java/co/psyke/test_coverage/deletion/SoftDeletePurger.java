@@ -0,0 +1,93 @@
+package co.psyke.test_coverage.deletion;
+
+import co.psyke.test_coverage.config.UserDeletionProperties;
+import co.psyke.test_coverage.repository.UserBulkRepository;
+import co.psyke.test_coverage.sharding.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Removes soft-deleted users every {@code app.deletion.purge-interval}, once
+ * they have been deleted for longer than {@code app.deletion.retention}.
+ * <p>
+ * In soft mode a delete only sets {@code deleted_at}, which is one indexed
+ * UPDATE on the request path; the rows, their credit holds and the space
+ * they take are reclaimed here in transactions of
+ * {@code app.deletion.purge-batch-size} users. Until then a soft-deleted
+ * user's username stays taken on its shard.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.deletion", name = "soft", havingValue = "true")
+public class SoftDeletePurger implements ApplicationRunner, AutoCloseable {
+    
+    private static final Logger log = LoggerFactory.getLogger(SoftDeletePurger.class);
+    
+    @Autowired
+    private UserBulkRepository userBulkRepository;
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private UserDeletionProperties properties;
+    
+    private ScheduledExecutorService scheduler;
+    
+    @Override
+    public void run(ApplicationArguments args) {
+        long interval = properties.getPurgeInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("soft-delete-purger")
+                .daemon(true)
+                .factory());
+        scheduler.scheduleWithFixedDelay(this::purgeQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+    
+    /** Removes every user that is due, and returns how many there were. */
+    public long purge() {
+        Instant deletedBefore = Instant.now().minus(properties.getRetention());
+        int batchSize = properties.getPurgeBatchSize();
+        long purged = 0;
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            int removed;
+            do {
+                removed = shardRouter.onShard(shard, () -> transactionTemplate.execute(
+                        status -> userBulkRepository.purgeSoftDeleted(deletedBefore, batchSize)));
+                purged += removed;
+            } while (removed == batchSize);
+        }
+        return purged;
+    }
+    
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+    
+    private void purgeQuietly() {
+        try {
+            long purged = purge();
+            if (purged > 0) {
+                log.debug("Purged {} soft-deleted users", purged);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Purging soft-deleted users failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package co.psyke.test_coverage.exception;
+
+public class HoldNotFoundException extends RuntimeException {
+    
+    public HoldNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,37 @@
+package co.psyke.test_coverage.holds;
+
+import co.psyke.test_coverage.repository.CreditHoldRepository;
+import co.psyke.test_coverage.service.UserService;
+import co.psyke.test_coverage.sharding.ShardRouter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Puts the holds that survived a restart back on the {@link HoldExpiryWheel}
+ * and starts it; due holds are released through {@link UserService#expireHold}.
+ * This is the only time the holds table is read in bulk.
+ */
+@Component
+public class CreditHoldExpirer implements ApplicationRunner {
+    
+    @Autowired
+    private HoldExpiryWheel holdExpiryWheel;
+    
+    @Autowired
+    private CreditHoldRepository creditHoldRepository;
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Override
+    public void run(ApplicationArguments args) {
+        shardRouter.scatter(creditHoldRepository::findAll)
+                .forEach(hold -> holdExpiryWheel.schedule(HoldKey.of(hold), hold.getExpiresAt()));
+        holdExpiryWheel.start(userService::expireHold);
+    }
+}
@@ -0,0 +1,162 @@
+package co.psyke.test_coverage.holds;
+
+import co.psyke.test_coverage.config.CreditHoldProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hashed time wheel tracking when open credit holds expire.
+ * <p>
+ * A hold is appended to the slot of its expiry tick and a single thread visits
+ * one slot per tick, so scheduling and cancelling are O(1) and expiry never
+ * queries the database for due holds. Slots are reused every
+ * {@code wheel-size} ticks: an entry whose deadline is further away is simply
+ * kept until a later visit. Cancelled entries are only marked and dropped when
+ * their slot comes round.
+ */
+@Component
+public class HoldExpiryWheel implements AutoCloseable {
+    
+    private static final Logger log = LoggerFactory.getLogger(HoldExpiryWheel.class);
+    
+    private final long tickMillis;
+    private final List<Entry>[] slots;
+    private final ConcurrentHashMap<HoldKey, Entry> entries = new ConcurrentHashMap<>();
+    
+    // Last tick whose slot was swept, written under that slot's lock
+    private volatile long currentTick;
+    
+    private ScheduledExecutorService scheduler;
+    
+    @Autowired
+    public HoldExpiryWheel(CreditHoldProperties properties) {
+        this(properties.getTick().toMillis(), properties.getWheelSize(), System.currentTimeMillis());
+    }
+    
+    @SuppressWarnings("unchecked")
+    HoldExpiryWheel(long tickMillis, int size, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.slots = new List[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new ArrayList<>();
+        }
+        this.currentTick = nowMillis / tickMillis;
+    }
+    
+    /** Starts expiring holds on a background thread, handing each due hold to {@code onExpire}. */
+    public void start(Consumer<HoldKey> onExpire) {
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("hold-expiry")
+                .daemon(true)
+                .factory());
+        scheduler.scheduleAtFixedRate(() -> expire(onExpire), tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    public void schedule(HoldKey key, Instant expiresAt) {
+        Entry entry = new Entry(key, expiresAt.toEpochMilli());
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+        
+        long deadlineTick = Math.ceilDiv(entry.deadline, tickMillis);
+        while (true) {
+            long tick = Math.max(deadlineTick, currentTick + 1);
+            List<Entry> slot = slot(tick);
+            synchronized (slot) {
+                // Re-checked under the lock: a sweep of this slot may have just moved past the tick
+                if (tick > currentTick) {
+                    slot.add(entry);
+                    return;
+                }
+            }
+        }
+    }
+    
+    public void cancel(HoldKey key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            entry.cancelled = true;
+        }
+    }
+    
+    public int size() {
+        return entries.size();
+    }
+    
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+    
+    /** Sweeps every slot up to {@code nowMillis} and returns the holds that are due. */
+    List<HoldKey> advance(long nowMillis) {
+        List<HoldKey> expired = new ArrayList<>();
+        long target = nowMillis / tickMillis;
+        // After a long pause every slot needs one visit, not one per missed tick
+        long tick = Math.max(currentTick, target - slots.length);
+        while (tick < target) {
+            tick++;
+            List<Entry> slot = slot(tick);
+            synchronized (slot) {
+                currentTick = tick;
+                Iterator<Entry> iterator = slot.iterator();
+                while (iterator.hasNext()) {
+                    Entry entry = iterator.next();
+                    if (entry.cancelled) {
+                        iterator.remove();
+                    } else if (entry.deadline <= nowMillis) {
+                        iterator.remove();
+                        if (entries.remove(entry.key, entry)) {
+                            expired.add(entry.key);
+                        }
+                    }
+                }
+            }
+        }
+        return expired;
+    }
+    
+    private void expire(Consumer<HoldKey> onExpire) {
+        long now = System.currentTimeMillis();
+        for (HoldKey key : advance(now)) {
+            try {
+                onExpire.accept(key);
+            } catch (RuntimeException e) {
+                // Still in the database; try again on the next tick
+                log.warn("Expiring hold {} failed: {}", key, e.getMessage());
+                schedule(key, Instant.ofEpochMilli(now + tickMillis));
+            }
+        }
+    }
+    
+    private List<Entry> slot(long tick) {
+        return slots[(int) Math.floorMod(tick, (long) slots.length)];
+    }
+    
+    private static final class Entry {
+        
+        private final HoldKey key;
+        private final long deadline;
+        private volatile boolean cancelled;
+        
+        private Entry(HoldKey key, long deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package co.psyke.test_coverage.holds;
+
+import co.psyke.test_coverage.model.CreditHold;
+
+/** Hold ids are only unique per shard, so a hold is always addressed together with its user. */
+public record HoldKey(long userId, long holdId) {
+    
+    public static HoldKey of(CreditHold hold) {
+        return new HoldKey(hold.getUserId(), hold.getId());
+    }
+}
@@ -2,7 +2,7 @@ package co.psyke.test_coverage.initialization;
 
 import co.psyke.test_coverage.config.DatabaseInitializationProperties;
 import co.psyke.test_coverage.model.User;
-import co.psyke.test_coverage.repository.UserRepository;
+import co.psyke.test_coverage.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
@@ -15,14 +15,15 @@ import java.util.stream.Collectors;
 public class DatabaseInitializer implements ApplicationRunner {
     
     @Autowired
-    private UserRepository userRepository;
+    private UserService userService;
     
     @Autowired
     private DatabaseInitializationProperties properties;
     
     @Override
     public void run(ApplicationArguments args) throws Exception {
-        if (userRepository.count() == 0) {
+        // Through the service so that, when sharded, users are spread and registered in the directory
+        if (userService.countUsers() == 0) {
             List<User> defaultUsers = properties.getDefaultUsers()
                 .stream()
                 .map(userConfig -> User.builder()
@@ -36,7 +37,7 @@ public class DatabaseInitializer implements ApplicationRunner {
                 )
                 .collect(Collectors.toList());
             
-            userRepository.saveAll(defaultUsers);
+            userService.createUsers(defaultUsers);
             System.out.println("✓ Database inizializzato con " + defaultUsers.size() + " utenti di default");
         }
     }
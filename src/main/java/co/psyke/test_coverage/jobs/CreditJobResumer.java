@@ -0,0 +1,23 @@
+package co.psyke.test_coverage.jobs;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Continues the credit jobs that were still running when the application
+ * stopped, from their last completed chunks. Only matters with a database that
+ * outlives the process, such as the durable profile.
+ */
+@Component
+public class CreditJobResumer implements ApplicationRunner {
+    
+    @Autowired
+    private CreditJobService creditJobService;
+    
+    @Override
+    public void run(ApplicationArguments args) {
+        creditJobService.resumeInterrupted();
+    }
+}
@@ -0,0 +1,312 @@
+package co.psyke.test_coverage.jobs;
+
+import co.psyke.test_coverage.concurrency.AdaptiveConcurrencyLimiter;
+import co.psyke.test_coverage.config.CreditJobProperties;
+import co.psyke.test_coverage.model.CreditJob;
+import co.psyke.test_coverage.model.CreditJobChunk;
+import co.psyke.test_coverage.model.UserChange;
+import co.psyke.test_coverage.ratelimit.TokenBucket;
+import co.psyke.test_coverage.repository.CreditJobChunkRepository;
+import co.psyke.test_coverage.repository.CreditJobRepository;
+import co.psyke.test_coverage.repository.UserBulkRepository;
+import co.psyke.test_coverage.repository.UserChangeRepository;
+import co.psyke.test_coverage.service.UserService;
+import co.psyke.test_coverage.sharding.ShardRouter;
+import co.psyke.test_coverage.stream.CreditEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Runs bulk credit changes over the whole users table.
+ * <p>
+ * A job splits the id space of every shard into ranges of about
+ * {@code app.jobs.chunk-size} users and applies each range with one UPDATE,
+ * {@code app.jobs.parallelism} ranges at a time. A chunk is marked done in the
+ * transaction of its update, which is the checkpoint: after a crash or a
+ * failure the job resumes with the chunks that are not done, and a chunk can
+ * never be applied twice. Chunks give way to online traffic when the adaptive
+ * concurrency limiter is close to its limit, and can be capped at
+ * {@code app.jobs.max-users-per-second}.
+ */
+@Service
+public class CreditJobService {
+    
+    private static final Logger log = LoggerFactory.getLogger(CreditJobService.class);
+    
+    // Jobs are kept on the first shard, their chunks on the shard of their users
+    private static final int JOB_SHARD = 0;
+    
+    @Autowired
+    private CreditJobRepository creditJobRepository;
+    
+    @Autowired
+    private CreditJobChunkRepository creditJobChunkRepository;
+    
+    @Autowired
+    private UserBulkRepository userBulkRepository;
+    
+    @Autowired
+    private UserChangeRepository userChangeRepository;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+    
+    @Autowired
+    private CreditJobProperties properties;
+    
+    private final Map<Long, Thread> running = new ConcurrentHashMap<>();
+    
+    /** Plans a job over the users that exist now and starts it in the background. */
+    public CreditJob startJob(CreditJob.Operation operation, Double amount, boolean activeOnly) {
+        if (operation == null) {
+            throw new IllegalArgumentException("Operation is required");
+        }
+        if (amount == null || amount <= 0) {
+            throw new IllegalArgumentException("Amount must be greater than 0");
+        }
+        
+        CreditJob job = onJobShard(() -> creditJobRepository.save(CreditJob.builder()
+                .operation(operation)
+                .amount(amount)
+                .activeOnly(activeOnly)
+                .status(CreditJob.Status.PENDING)
+                .totalChunks(0)
+                .createdAt(Instant.now())
+                .build()));
+        return plan(job);
+    }
+    
+    /** Restarts a failed job with the chunks it has not applied yet. */
+    public Optional<CreditJob> resumeJob(Long id) {
+        return onJobShard(() -> creditJobRepository.findById(id)).map(job -> {
+            if (job.getStatus() != CreditJob.Status.FAILED || isRunning(id)) {
+                throw new IllegalStateException("Job " + id + " is " + job.getStatus() + ", only failed jobs can be resumed");
+            }
+            job.setStatus(CreditJob.Status.RUNNING);
+            job.setError(null);
+            job.setFinishedAt(null);
+            CreditJob resumed = onJobShard(() -> creditJobRepository.save(job));
+            run(resumed);
+            return resumed;
+        });
+    }
+    
+    /** Picks up the jobs that were running when the application stopped. */
+    public void resumeInterrupted() {
+        // Nothing of these was applied, but their plan may be incomplete
+        onJobShard(() -> creditJobRepository.findByStatus(CreditJob.Status.PENDING)).forEach(this::plan);
+        onJobShard(() -> creditJobRepository.findByStatus(CreditJob.Status.RUNNING)).forEach(this::run);
+    }
+    
+    public Optional<Progress> getProgress(Long id) {
+        return onJobShard(() -> creditJobRepository.findById(id)).map(job -> {
+            List<CreditJobChunk> chunks = getChunks(id);
+            int completed = 0;
+            long updatedUsers = 0;
+            long slowestChunkMillis = 0;
+            for (CreditJobChunk chunk : chunks) {
+                if (chunk.getDone()) {
+                    completed++;
+                    updatedUsers += chunk.getUpdatedUsers();
+                    slowestChunkMillis = Math.max(slowestChunkMillis, chunk.getDurationMillis());
+                }
+            }
+            Instant end = job.getFinishedAt() == null ? Instant.now() : job.getFinishedAt();
+            double seconds = Math.max(Duration.between(job.getCreatedAt(), end).toMillis(), 1) / 1000.0;
+            return new Progress(job, completed, updatedUsers, updatedUsers / seconds, slowestChunkMillis);
+        });
+    }
+    
+    public List<CreditJobChunk> getChunks(Long id) {
+        List<CreditJobChunk> chunks = shardRouter.scatter(() -> creditJobChunkRepository.findByJobIdOrderByStartId(id));
+        if (shardRouter.shardCount() > 1) {
+            chunks.sort(Comparator.comparing(CreditJobChunk::getStartId));
+        }
+        return chunks;
+    }
+    
+    public boolean isRunning(Long id) {
+        return running.containsKey(id);
+    }
+    
+    // Splits the id space of every shard into chunks, then starts the job
+    private CreditJob plan(CreditJob job) {
+        // Shard k only holds ids k+1, k+1+n, ..., so a range n times wider still holds chunk-size users
+        long width = (long) properties.getChunkSize() * shardRouter.shardCount();
+        int totalChunks = 0;
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            totalChunks += shardRouter.onShard(shard, () -> planChunks(job.getId(), width));
+        }
+        job.setTotalChunks(totalChunks);
+        job.setStatus(CreditJob.Status.RUNNING);
+        CreditJob planned = onJobShard(() -> creditJobRepository.save(job));
+        run(planned);
+        return planned;
+    }
+    
+    private int planChunks(Long jobId, long width) {
+        // Leftovers of a plan that was interrupted
+        creditJobChunkRepository.deleteByJobId(jobId);
+        long[] range = userBulkRepository.idRange();
+        if (range == null) {
+            return 0;
+        }
+        List<CreditJobChunk> chunks = new ArrayList<>();
+        for (long start = range[0]; start <= range[1]; start += width) {
+            chunks.add(CreditJobChunk.builder()
+                    .jobId(jobId)
+                    .startId(start)
+                    .endId(Math.min(start + width - 1, range[1]))
+                    .build());
+        }
+        creditJobChunkRepository.saveAll(chunks);
+        return chunks.size();
+    }
+    
+    // One coordinating thread per job; a job that is already running here is left alone
+    private void run(CreditJob job) {
+        running.computeIfAbsent(job.getId(), id -> Thread.ofPlatform()
+                .name("credit-job-" + id)
+                .daemon(true)
+                .start(() -> {
+                    try {
+                        execute(job);
+                    } finally {
+                        running.remove(id);
+                    }
+                }));
+    }
+    
+    private void execute(CreditJob job) {
+        TokenBucket throttle = null;
+        if (properties.getMaxUsersPerSecond() > 0) {
+            // Paced per chunk, a chunk being at most chunk-size users
+            double chunksPerSecond = (double) properties.getMaxUsersPerSecond() / properties.getChunkSize();
+            throttle = new TokenBucket(1, chunksPerSecond);
+        }
+        
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        try (ExecutorService pool = Executors.newFixedThreadPool(properties.getParallelism(), Thread.ofPlatform()
+                .name("credit-job-" + job.getId() + "-", 0)
+                .daemon(true)
+                .factory())) {
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                int chunkShard = shard;
+                List<CreditJobChunk> pending = shardRouter.onShard(shard,
+                        () -> creditJobChunkRepository.findByJobIdAndDoneFalseOrderByStartId(job.getId()));
+                TokenBucket chunkThrottle = throttle;
+                for (CreditJobChunk chunk : pending) {
+                    pool.execute(() -> {
+                        // After the first failure the remaining chunks stay pending for a resume
+                        if (failure.get() != null) {
+                            return;
+                        }
+                        try {
+                            process(job, chunkShard, chunk, chunkThrottle);
+                        } catch (Exception e) {
+                            failure.compareAndSet(null, e);
+                        }
+                    });
+                }
+            }
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+        }
+        
+        Exception error = failure.get();
+        if (error != null) {
+            log.warn("Credit job {} failed, resume it to apply the remaining chunks: {}", job.getId(), error.getMessage());
+        }
+        finish(job.getId(), error == null ? null : error.toString());
+    }
+    
+    private void process(CreditJob job, int shard, CreditJobChunk chunk, TokenBucket throttle)
+            throws InterruptedException {
+        pace(throttle);
+        long started = System.nanoTime();
+        List<UserBulkRepository.CreditChange> changes = shardRouter.onShard(shard,
+                () -> transactionTemplate.execute(status -> {
+                    List<UserBulkRepository.CreditChange> applied = userBulkRepository.applyCredits(
+                            job.getOperation(), job.getAmount(), job.getActiveOnly(),
+                            chunk.getStartId(), chunk.getEndId());
+                    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+                    if (creditJobChunkRepository.complete(chunk.getId(), applied.size(), millis, Instant.now()) == 0) {
+                        // Applied by another runner in the meantime
+                        status.setRollbackOnly();
+                        return List.of();
+                    }
+                    userChangeRepository.appendAll(
+                            applied.stream().map(change -> change.user().getId()).toList(), UserChange.Kind.CREDITS);
+                    return applied;
+                }));
+        
+        CreditEvent.Type type = job.getOperation() == CreditJob.Operation.GRANT
+                ? CreditEvent.Type.ADD
+                : CreditEvent.Type.SPEND;
+        for (UserBulkRepository.CreditChange change : changes) {
+            userService.creditsApplied(change.user(), type, change.amount());
+        }
+        if (log.isDebugEnabled()) {
+            long micros = Math.max(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started), 1);
+            log.debug("Credit job {} chunk [{}, {}] on shard {}: {} users in {} ms, {} users/s", job.getId(),
+                    chunk.getStartId(), chunk.getEndId(), shard, changes.size(), micros / 1000,
+                    changes.size() * 1_000_000L / micros);
+        }
+    }
+    
+    // Online requests come first: wait while they use most of the concurrency limit
+    private void pace(TokenBucket throttle) throws InterruptedException {
+        while (concurrencyLimiter.getInflight() > concurrencyLimiter.getLimit() * properties.getYieldAbove()) {
+            Thread.sleep(properties.getYieldPause());
+        }
+        if (throttle != null) {
+            long wait;
+            while ((wait = throttle.tryAcquire(System.nanoTime())) > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+    }
+    
+    private void finish(Long id, String error) {
+        onJobShard(() -> creditJobRepository.findById(id)).ifPresent(job -> {
+            job.setStatus(error == null ? CreditJob.Status.COMPLETED : CreditJob.Status.FAILED);
+            job.setError(error == null ? null : error.substring(0, Math.min(error.length(), 255)));
+            job.setFinishedAt(Instant.now());
+            onJobShard(() -> creditJobRepository.save(job));
+        });
+    }
+    
+    private <T> T onJobShard(Supplier<T> work) {
+        return shardRouter.onShard(JOB_SHARD, work);
+    }
+    
+    public record Progress(CreditJob job, int completedChunks, long updatedUsers, double usersPerSecond,
+            long slowestChunkMillis) {
+    }
+}
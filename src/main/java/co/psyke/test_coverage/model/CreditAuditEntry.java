@@ -0,0 +1,52 @@
+package co.psyke.test_coverage.model;
+
+import co.psyke.test_coverage.stream.CreditEvent;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * One credit change as recorded by the audit pipeline, on the shard of its
+ * user. Rows are only ever appended, in batches, so ids follow the order in
+ * which a user's changes were published. The event id makes writing the same
+ * change again a no-op.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Builder
+@Table(name = "credit_audit",
+        indexes = @Index(name = "idx_credit_audit_user_id", columnList = "user_id"),
+        uniqueConstraints = @UniqueConstraint(name = "uk_credit_audit_event_id", columnNames = "event_id"))
+public class CreditAuditEntry {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "event_id")
+    private UUID eventId;
+    
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, columnDefinition = "VARCHAR(16)")
+    private CreditEvent.Type type;
+    
+    @Column(nullable = false, columnDefinition = "DECIMAL(10,2)")
+    private Double amount;
+    
+    // Balance after the change
+    @Column(nullable = false, columnDefinition = "DECIMAL(10,2)")
+    private Double credits;
+    
+    @Column(name = "occurred_at", nullable = false)
+    private Instant occurredAt;
+}
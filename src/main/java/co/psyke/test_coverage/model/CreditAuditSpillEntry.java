@@ -0,0 +1,53 @@
+package co.psyke.test_coverage.model;
+
+import co.psyke.test_coverage.stream.CreditEvent;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A credit event the audit pipeline had no room for, on the shard of its user.
+ * Written and read by {@code JdbcCreditAuditSpill}; mapped so the in-memory
+ * schema has the table too.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Builder
+@Table(name = "credit_audit_spill",
+        indexes = {
+            @Index(name = "idx_credit_audit_spill_occurred_at", columnList = "occurred_at"),
+            @Index(name = "idx_credit_audit_spill_seq", columnList = "seq")
+        })
+public class CreditAuditSpillEntry {
+    
+    @Id
+    @Column(name = "event_id")
+    private UUID eventId;
+    
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, columnDefinition = "VARCHAR(16)")
+    private CreditEvent.Type type;
+    
+    @Column(nullable = false, columnDefinition = "DECIMAL(10,2)")
+    private Double amount;
+    
+    @Column(nullable = false, columnDefinition = "DECIMAL(10,2)")
+    private Double credits;
+    
+    @Column(name = "occurred_at", nullable = false)
+    private Instant occurredAt;
+    
+    // Taken by the insert, a merge of the same event keeps it
+    @Column(insertable = false, updatable = false, columnDefinition = "BIGINT GENERATED BY DEFAULT AS IDENTITY")
+    private Long seq;
+}
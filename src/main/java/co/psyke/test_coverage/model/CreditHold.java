@@ -0,0 +1,31 @@
+package co.psyke.test_coverage.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Builder
+@Table(name = "credit_holds", indexes = @Index(name = "idx_credit_holds_user_id", columnList = "user_id"))
+public class CreditHold {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    @Column(nullable = false, columnDefinition = "DECIMAL(10,2)")
+    private Double amount;
+    
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+}
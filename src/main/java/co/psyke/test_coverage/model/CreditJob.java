@@ -0,0 +1,62 @@
+package co.psyke.test_coverage.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * A bulk credit change applied to every user, or every active user. The work
+ * itself is tracked in {@link CreditJobChunk}s; the job row lives on the first
+ * shard.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Builder
+@Table(name = "credit_jobs")
+public class CreditJob {
+    
+    public enum Operation {
+        // Adds the amount to every user
+        GRANT,
+        // Takes up to the amount from the credits that are not reserved by holds
+        EXPIRE
+    }
+    
+    // PENDING until every chunk has been planned, only then does any of them run
+    public enum Status { PENDING, RUNNING, COMPLETED, FAILED }
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, columnDefinition = "VARCHAR(16)")
+    private Operation operation;
+    
+    @Column(nullable = false, columnDefinition = "DECIMAL(10,2)")
+    private Double amount;
+    
+    @Column(name = "active_only", nullable = false)
+    private Boolean activeOnly;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, columnDefinition = "VARCHAR(16)")
+    private Status status;
+    
+    @Column(name = "total_chunks", nullable = false)
+    private Integer totalChunks;
+    
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+    
+    @Column(name = "finished_at")
+    private Instant finishedAt;
+    
+    private String error;
+}
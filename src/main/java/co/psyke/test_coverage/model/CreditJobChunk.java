@@ -0,0 +1,58 @@
+package co.psyke.test_coverage.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * An id range of a {@link CreditJob}. It lives on the shard of the users it
+ * covers and is marked done in the same transaction as their update, so a
+ * restarted job skips exactly the chunks that were applied.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Builder
+@Table(name = "credit_job_chunks", indexes = @Index(name = "idx_credit_job_chunks_job_id", columnList = "job_id"))
+public class CreditJobChunk {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "job_id", nullable = false)
+    private Long jobId;
+    
+    // Inclusive id range
+    @Column(name = "start_id", nullable = false)
+    private Long startId;
+    
+    @Column(name = "end_id", nullable = false)
+    private Long endId;
+    
+    @Builder.Default
+    @Column(nullable = false)
+    private Boolean done = false;
+    
+    @Column(name = "updated_users")
+    private Integer updatedUsers;
+    
+    @Column(name = "duration_millis")
+    private Long durationMillis;
+    
+    @Column(name = "completed_at")
+    private Instant completedAt;
+    
+    // Not a column: derived for the per-chunk throughput report
+    public Double getUsersPerSecond() {
+        if (updatedUsers == null || durationMillis == null) {
+            return null;
+        }
+        return updatedUsers * 1000.0 / Math.max(durationMillis, 1);
+    }
+}
@@ -1,17 +1,23 @@
 package co.psyke.test_coverage.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.SQLRestriction;
+
+import java.time.Instant;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
 @Builder
-@Table(name = "users")
+@Table(name = "users", indexes = @Index(name = "idx_users_deleted_at", columnList = "deleted_at"))
+@SQLRestriction("deleted_at IS NULL")
 public class User {
     
     @Id
@@ -33,6 +39,24 @@ public class User {
     @Column(columnDefinition = "BOOLEAN DEFAULT true")
     private Boolean active = true;
     
-    @Column(nullable = false, columnDefinition = "DECIMAL(10,2) DEFAULT 1000")
+    // Only ever changed by the credit queries once inserted, like the reservations below
+    @Column(nullable = false, updatable = false, columnDefinition = "DECIMAL(10,2) DEFAULT 1000")
     private Double credits = 1000.0;
+    
+    // Sum of the open credit holds, only ever changed by the hold queries so that a save can't overwrite it
+    @Builder.Default
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(nullable = false, insertable = false, updatable = false, columnDefinition = "DECIMAL(10,2) DEFAULT 0")
+    private Double reserved = 0.0;
+    
+    // Raised by every write in the statement that makes it, so caches fed after the commit can keep the newest state
+    @Builder.Default
+    @JsonIgnore
+    @Column(nullable = false, insertable = false, updatable = false, columnDefinition = "BIGINT DEFAULT 0")
+    private Long version = 0L;
+    
+    // Set by a soft delete, after which entity queries no longer see the row; only the delete queries write it
+    @JsonIgnore
+    @Column(name = "deleted_at", insertable = false, updatable = false)
+    private Instant deletedAt;
 }
@@ -0,0 +1,42 @@
+package co.psyke.test_coverage.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * An entry of the change log of a shard: the user it concerns was written by
+ * instance {@code node}, in the transaction that inserted this row. Instances
+ * sharing the database tail the log by {@code seq} to drop what they cached.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Builder
+@Table(name = "user_changes", indexes = @Index(name = "idx_user_changes_changed_at", columnList = "changed_at"))
+public class UserChange {
+    
+    public enum Kind { CREATED, UPDATED, CREDITS, RESERVED, DELETED }
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long seq;
+    
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, columnDefinition = "VARCHAR(16)")
+    private Kind kind;
+    
+    @Column(nullable = false, length = 64)
+    private String node;
+    
+    @Column(name = "changed_at", nullable = false)
+    private Instant changedAt;
+}
@@ -0,0 +1,65 @@
+package co.psyke.test_coverage.ratelimit;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejects requests to {@link RateLimited} endpoints with 429 and a
+ * {@code Retry-After} header once the user's or the global budget is spent.
+ * Runs before the controller, so rejected requests never reach the database.
+ */
+@Component
+public class RateLimitInterceptor implements HandlerInterceptor {
+    
+    @Autowired
+    private RateLimiter rateLimiter;
+    
+    public RateLimitInterceptor() {
+    }
+    
+    RateLimitInterceptor(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+    
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!(handler instanceof HandlerMethod method)) {
+            return true;
+        }
+        RateLimited rateLimited = method.getMethodAnnotation(RateLimited.class);
+        if (rateLimited == null) {
+            return true;
+        }
+        
+        long wait = rateLimiter.tryAcquire(userKey(request, rateLimited));
+        if (wait == 0) {
+            return true;
+        }
+        
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"message\":\"Too many requests, retry in " + retryAfterSeconds + "s\"}");
+        return false;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static String userKey(HttpServletRequest request, RateLimited rateLimited) {
+        Map<String, String> variables =
+                (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        String value = variables == null ? null : variables.get(rateLimited.key());
+        return value == null ? null : rateLimited.key() + ":" + value;
+    }
+}
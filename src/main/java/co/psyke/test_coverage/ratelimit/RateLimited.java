@@ -0,0 +1,18 @@
+package co.psyke.test_coverage.ratelimit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a controller endpoint as guarded by {@link RateLimitInterceptor}. The
+ * per-user bucket is keyed by the value of the path variable named by
+ * {@link #key()}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimited {
+    
+    String key() default "id";
+}
@@ -0,0 +1,116 @@
+package co.psyke.test_coverage.ratelimit;
+
+import co.psyke.test_coverage.config.RateLimitProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-user and global request budgets.
+ * <p>
+ * Per-user buckets live in a map bounded by {@code max-tracked-keys}. When the
+ * bound is exceeded one caller sweeps out the buckets that have refilled
+ * completely, which is lossless; only if every tracked user is still active
+ * are arbitrary buckets dropped, briefly giving those users a fresh budget.
+ */
+@Component
+public class RateLimiter {
+    
+    private final Map<String, TokenBucket> perUser = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private final AtomicLong rejected = new AtomicLong();
+    
+    private final RateLimitProperties properties;
+    private final TokenBucket global;
+    private final LongSupplier nanoClock;
+    
+    @Autowired
+    public RateLimiter(RateLimitProperties properties) {
+        this(properties, System::nanoTime);
+    }
+    
+    // Tests move the clock themselves, so refills never depend on how fast they run
+    RateLimiter(RateLimitProperties properties, LongSupplier nanoClock) {
+        this.properties = properties;
+        this.global = new TokenBucket(properties.getGlobal().getCapacity(), properties.getGlobal().getRefillPerSecond());
+        this.nanoClock = nanoClock;
+    }
+    
+    public long tryAcquire(String key) {
+        return tryAcquire(key, nanoClock.getAsLong());
+    }
+    
+    /**
+     * Takes a token from the user's bucket (when {@code key} is not null) and
+     * from the global one. A request the global bucket rejects gets its user
+     * token back, so a global overload doesn't use up the budget of users
+     * whose requests never ran.
+     *
+     * @return 0 if the request may proceed, otherwise the nanoseconds after which it could
+     */
+    public long tryAcquire(String key, long nowNanos) {
+        if (!properties.isEnabled()) {
+            return 0;
+        }
+        TokenBucket bucket = key == null ? null : bucketFor(key, nowNanos);
+        if (bucket != null) {
+            long wait = bucket.tryAcquire(nowNanos);
+            if (wait > 0) {
+                rejected.incrementAndGet();
+                return wait;
+            }
+        }
+        long wait = global.tryAcquire(nowNanos);
+        if (wait > 0) {
+            if (bucket != null) {
+                bucket.refund();
+            }
+            rejected.incrementAndGet();
+        }
+        return wait;
+    }
+    
+    public int trackedKeys() {
+        return perUser.size();
+    }
+    
+    public long rejectedCount() {
+        return rejected.get();
+    }
+    
+    private TokenBucket bucketFor(String key, long nowNanos) {
+        TokenBucket bucket = perUser.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        bucket = perUser.computeIfAbsent(key, k ->
+                new TokenBucket(properties.getPerUser().getCapacity(), properties.getPerUser().getRefillPerSecond()));
+        if (perUser.size() > properties.getMaxTrackedKeys()) {
+            evict(nowNanos);
+        }
+        return bucket;
+    }
+    
+    private void evict(long nowNanos) {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            perUser.values().removeIf(bucket -> bucket.isIdle(nowNanos));
+            Iterator<TokenBucket> overflow = perUser.values().iterator();
+            int excess = perUser.size() - properties.getMaxTrackedKeys();
+            while (excess-- > 0 && overflow.hasNext()) {
+                overflow.next();
+                overflow.remove();
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+}
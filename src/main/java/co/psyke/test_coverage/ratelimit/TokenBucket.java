@@ -0,0 +1,60 @@
+package co.psyke.test_coverage.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket, implemented as a generic cell rate algorithm: the
+ * whole state is the theoretical arrival time of the next request, updated
+ * with a single CAS. A bucket whose arrival time is in the past is full and
+ * indistinguishable from a new one.
+ */
+public class TokenBucket {
+    
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+    
+    public TokenBucket(int capacity, double refillPerSecond) {
+        if (capacity < 1 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("capacity and refill rate must be positive");
+        }
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / refillPerSecond));
+        this.burstNanos = intervalNanos * (capacity - 1);
+    }
+    
+    /**
+     * Takes a token if one is available.
+     *
+     * @return 0 if the request is allowed, otherwise the nanoseconds to wait before a token is available
+     */
+    public long tryAcquire(long nowNanos) {
+        while (true) {
+            long stored = theoreticalArrival.get();
+            long arrival = stored == Long.MIN_VALUE ? nowNanos : Math.max(stored, nowNanos);
+            long wait = arrival - nowNanos - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(stored, arrival + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+    
+    /** Gives back a token taken by a request that was then rejected elsewhere. */
+    public void refund() {
+        while (true) {
+            long stored = theoreticalArrival.get();
+            // Arrival times in the past count as now, so this can't overfill the bucket
+            if (stored == Long.MIN_VALUE || theoreticalArrival.compareAndSet(stored, stored - intervalNanos)) {
+                return;
+            }
+        }
+    }
+    
+    /** True when the bucket is full again, so dropping it changes nothing. */
+    public boolean isIdle(long nowNanos) {
+        long stored = theoreticalArrival.get();
+        return stored == Long.MIN_VALUE || stored - nowNanos <= 0;
+    }
+}
@@ -0,0 +1,171 @@
+package co.psyke.test_coverage.replication;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stand-in for database replication when the replicas are embedded H2
+ * databases: every {@code sync-interval} the users table is copied from the
+ * primary to each replica in a single replica transaction, so replica readers
+ * always see a consistent snapshot. The copy follows the primary columns, so
+ * entity changes need no replica-specific DDL.
+ * <p>
+ * After each copy the router is told which primary position the replica now
+ * contains, which is what read-your-writes and the lag bound are based on.
+ */
+public class EmbeddedReplicaSynchronizer implements AutoCloseable {
+    
+    private static final Logger log = LoggerFactory.getLogger(EmbeddedReplicaSynchronizer.class);
+    
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final ReplicaReadRouter router;
+    private final Duration interval;
+    private final List<Set<String>> replicaColumns = new ArrayList<>();
+    
+    private ScheduledExecutorService scheduler;
+    
+    public EmbeddedReplicaSynchronizer(DataSource primary, List<DataSource> replicas, ReplicaReadRouter router,
+            Duration interval) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.router = router;
+        this.interval = interval;
+        for (int i = 0; i < replicas.size(); i++) {
+            replicaColumns.add(new HashSet<>());
+        }
+    }
+    
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("replica-sync")
+                .daemon(true)
+                .factory());
+        scheduler.scheduleWithFixedDelay(this::syncQuietly, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+    
+    /** Copies the primary to every replica now, on the calling thread. */
+    public synchronized void syncNow() throws SQLException {
+        for (int replica = 0; replica < replicas.size(); replica++) {
+            long position = router.position();
+            long startedAt = System.nanoTime();
+            copy(replica);
+            router.synced(replica, position, startedAt);
+        }
+    }
+    
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+    
+    private void syncQuietly() {
+        try {
+            syncNow();
+        } catch (SQLException | RuntimeException e) {
+            // The table may not exist yet during startup; replicas just stay behind until the next run
+            log.debug("Replica sync failed: {}", e.getMessage());
+        }
+    }
+    
+    private void copy(int replica) throws SQLException {
+        try (Connection source = primary.getConnection();
+             Statement select = source.createStatement()) {
+            select.setFetchSize(500);
+            try (ResultSet rows = select.executeQuery("SELECT * FROM users");
+                 Connection target = replicas.get(replica).getConnection()) {
+                ResultSetMetaData metadata = rows.getMetaData();
+                ensureColumns(target, metadata, replicaColumns.get(replica));
+                
+                target.setAutoCommit(false);
+                try {
+                    try (Statement clear = target.createStatement()) {
+                        clear.executeUpdate("DELETE FROM users");
+                    }
+                    try (PreparedStatement insert = target.prepareStatement(insertSql(metadata))) {
+                        int pending = 0;
+                        while (rows.next()) {
+                            for (int column = 1; column <= metadata.getColumnCount(); column++) {
+                                insert.setObject(column, rows.getObject(column));
+                            }
+                            insert.addBatch();
+                            if (++pending == 500) {
+                                insert.executeBatch();
+                                pending = 0;
+                            }
+                        }
+                        if (pending > 0) {
+                            insert.executeBatch();
+                        }
+                    }
+                    target.commit();
+                } catch (SQLException e) {
+                    target.rollback();
+                    throw e;
+                } finally {
+                    target.setAutoCommit(true);
+                }
+            }
+        }
+    }
+    
+    // Creates the replica table, or adds the columns the primary gained since the last copy
+    private void ensureColumns(Connection target, ResultSetMetaData metadata, Set<String> known) throws SQLException {
+        List<String> definitions = new ArrayList<>();
+        for (int column = 1; column <= metadata.getColumnCount(); column++) {
+            definitions.add(metadata.getColumnName(column) + " " + columnType(metadata, column));
+        }
+        if (known.size() == definitions.size()) {
+            return;
+        }
+        
+        try (Statement ddl = target.createStatement()) {
+            if (known.isEmpty()) {
+                ddl.execute("CREATE TABLE IF NOT EXISTS users (" + String.join(", ", definitions) + ")");
+            }
+            for (String definition : definitions) {
+                ddl.execute("ALTER TABLE users ADD COLUMN IF NOT EXISTS " + definition);
+            }
+        }
+        for (int column = 1; column <= metadata.getColumnCount(); column++) {
+            known.add(metadata.getColumnName(column));
+        }
+    }
+    
+    private static String columnType(ResultSetMetaData metadata, int column) throws SQLException {
+        String type = metadata.getColumnTypeName(column);
+        return switch (type) {
+            case "CHARACTER VARYING", "VARCHAR", "CHARACTER", "CHAR" -> type + "(" + metadata.getPrecision(column) + ")";
+            case "DECIMAL", "NUMERIC" -> type + "(" + metadata.getPrecision(column) + "," + metadata.getScale(column) + ")";
+            default -> type;
+        };
+    }
+    
+    private static String insertSql(ResultSetMetaData metadata) throws SQLException {
+        List<String> columns = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        for (int column = 1; column <= metadata.getColumnCount(); column++) {
+            columns.add(metadata.getColumnName(column));
+            placeholders.add("?");
+        }
+        return "INSERT INTO users (" + String.join(", ", columns) + ") VALUES (" + String.join(", ", placeholders) + ")";
+    }
+}
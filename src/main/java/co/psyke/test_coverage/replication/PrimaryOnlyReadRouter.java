@@ -0,0 +1,33 @@
+package co.psyke.test_coverage.replication;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Router used when replication is disabled: every read runs on the primary.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.replication", name = "enabled", havingValue = "false", matchIfMissing = true)
+public class PrimaryOnlyReadRouter implements ReadRouter {
+    
+    @Override
+    public <T> T read(Long userId, Supplier<T> query) {
+        return query.get();
+    }
+    
+    @Override
+    public boolean isStale(Long userId) {
+        return false;
+    }
+    
+    @Override
+    public boolean hasPendingWrites() {
+        return false;
+    }
+    
+    @Override
+    public void written(Long userId) {
+    }
+}
@@ -0,0 +1,25 @@
+package co.psyke.test_coverage.replication;
+
+import java.util.function.Supplier;
+
+/**
+ * Sends read-only work to a replica when one is fresh enough, otherwise to the
+ * primary.
+ * <p>
+ * Every write goes through {@link #written(Long)}, which bumps a primary
+ * position and remembers it for the written user. A read of that user only
+ * goes to a replica that has applied the position (read-your-writes), and no
+ * read goes to a replica lagging more than {@code app.replication.max-lag}.
+ */
+public interface ReadRouter {
+    
+    // userId may be null for lookups by username or email, which are only lag-bounded
+    <T> T read(Long userId, Supplier<T> query);
+    
+    // True if the user has a write that some replica has not applied yet
+    boolean isStale(Long userId);
+    
+    boolean hasPendingWrites();
+    
+    void written(Long userId);
+}
@@ -0,0 +1,27 @@
+package co.psyke.test_coverage.replication;
+
+/**
+ * Replica selected for the current thread, read by {@link ReplicaRoutingDataSource};
+ * no selection means the primary.
+ */
+public final class ReplicaContext {
+    
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+    
+    private ReplicaContext() {
+    }
+    
+    public static Integer current() {
+        return CURRENT.get();
+    }
+    
+    static Integer set(Integer replica) {
+        Integer previous = CURRENT.get();
+        if (replica == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(replica);
+        }
+        return previous;
+    }
+}
@@ -0,0 +1,42 @@
+package co.psyke.test_coverage.replication;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * Connection pools of the primary and of the configured replicas.
+ */
+public class ReplicaDataSources implements AutoCloseable {
+    
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    
+    public ReplicaDataSources(DataSource primary, List<DataSource> replicas) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+    }
+    
+    public DataSource primary() {
+        return primary;
+    }
+    
+    public List<DataSource> replicas() {
+        return replicas;
+    }
+    
+    @Override
+    public void close() {
+        close(primary);
+        replicas.forEach(ReplicaDataSources::close);
+    }
+    
+    private static void close(DataSource dataSource) {
+        if (dataSource instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                // Shutting down anyway
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package co.psyke.test_coverage.replication;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Router used when {@code app.replication.enabled} is set, see {@link ReadRouter}.
+ * Replica freshness is reported through {@link #synced}, by the embedded
+ * synchronizer locally or by any probe able to tell the position a replica has
+ * applied.
+ */
+public class ReplicaReadRouter implements ReadRouter {
+    
+    private final Replica[] replicas;
+    private final long maxLagNanos;
+    
+    private final AtomicLong position = new AtomicLong();
+    private final ConcurrentHashMap<Long, Long> pendingWrites = new ConcurrentHashMap<>();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    
+    private final AtomicLong replicaReads = new AtomicLong();
+    private final AtomicLong primaryReads = new AtomicLong();
+    
+    public ReplicaReadRouter(int replicaCount, Duration maxLag) {
+        this.replicas = new Replica[replicaCount];
+        for (int i = 0; i < replicaCount; i++) {
+            replicas[i] = new Replica();
+        }
+        this.maxLagNanos = maxLag.toNanos();
+    }
+    
+    @Override
+    public <T> T read(Long userId, Supplier<T> query) {
+        int replica = pickReplica(userId, System.nanoTime());
+        if (replica < 0) {
+            primaryReads.incrementAndGet();
+            return query.get();
+        }
+        
+        replicaReads.incrementAndGet();
+        Integer previous = ReplicaContext.set(replica);
+        try {
+            return query.get();
+        } finally {
+            ReplicaContext.set(previous);
+        }
+    }
+    
+    @Override
+    public boolean isStale(Long userId) {
+        Long pending = userId == null ? null : pendingWrites.get(userId);
+        return pending != null && pending > minAppliedPosition();
+    }
+    
+    @Override
+    public boolean hasPendingWrites() {
+        return position.get() > minAppliedPosition();
+    }
+    
+    @Override
+    public void written(Long userId) {
+        long written = position.incrementAndGet();
+        if (userId != null) {
+            pendingWrites.merge(userId, written, Math::max);
+        }
+    }
+    
+    /** Current primary position; a replica copy started after reading it contains every write up to it. */
+    public long position() {
+        return position.get();
+    }
+    
+    /**
+     * Records that {@code replica} now contains every write up to
+     * {@code appliedPosition}, as of a copy started at {@code startedAtNanos}.
+     */
+    public void synced(int replica, long appliedPosition, long startedAtNanos) {
+        replicas[replica].applied(appliedPosition, startedAtNanos);
+        long applied = minAppliedPosition();
+        pendingWrites.values().removeIf(pending -> pending <= applied);
+    }
+    
+    public int replicaCount() {
+        return replicas.length;
+    }
+    
+    public long replicaReads() {
+        return replicaReads.get();
+    }
+    
+    public long primaryReads() {
+        return primaryReads.get();
+    }
+    
+    // Round robin over the replicas that have the user's last write and are within the lag bound
+    int pickReplica(Long userId, long now) {
+        Long pending = userId == null ? null : pendingWrites.get(userId);
+        long required = pending == null ? 0 : pending;
+        long current = position.get();
+        int start = Math.floorMod(nextReplica.getAndIncrement(), replicas.length);
+        for (int i = 0; i < replicas.length; i++) {
+            int candidate = (start + i) % replicas.length;
+            Replica replica = replicas[candidate];
+            if (replica.appliedPosition >= required && replica.lagNanos(current, now) <= maxLagNanos) {
+                return candidate;
+            }
+        }
+        return -1;
+    }
+    
+    private long minAppliedPosition() {
+        long min = Long.MAX_VALUE;
+        for (Replica replica : replicas) {
+            min = Math.min(min, replica.appliedPosition);
+        }
+        return min;
+    }
+    
+    private static final class Replica {
+        
+        private volatile long appliedPosition = -1;
+        private volatile long syncedAtNanos;
+        
+        private synchronized void applied(long position, long startedAtNanos) {
+            if (position >= appliedPosition) {
+                appliedPosition = position;
+                syncedAtNanos = startedAtNanos;
+            }
+        }
+        
+        // Caught up replicas have no lag; otherwise they miss at most what was written since their last copy
+        private long lagNanos(long primaryPosition, long now) {
+            if (appliedPosition < 0) {
+                return Long.MAX_VALUE;
+            }
+            return appliedPosition >= primaryPosition ? 0 : now - syncedAtNanos;
+        }
+    }
+}
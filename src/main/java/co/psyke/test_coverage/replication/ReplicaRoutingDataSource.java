@@ -0,0 +1,22 @@
+package co.psyke.test_coverage.replication;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Hands out replica connections inside a {@link ReplicaContext} scope and
+ * primary connections everywhere else, including schema creation at startup.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    
+    static final String PRIMARY = "primary";
+    
+    static String replicaKey(int replica) {
+        return "replica-" + replica;
+    }
+    
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer replica = ReplicaContext.current();
+        return replica == null ? PRIMARY : replicaKey(replica);
+    }
+}
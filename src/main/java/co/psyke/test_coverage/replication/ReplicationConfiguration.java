@@ -0,0 +1,85 @@
+package co.psyke.test_coverage.replication;
+
+import co.psyke.test_coverage.config.ReplicationProperties;
+import co.psyke.test_coverage.config.ShardingProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Routes read-only service calls to the replicas listed under
+ * {@code app.replication.replicas}; the primary is the regular
+ * {@code spring.datasource}. The replicas are kept in sync by
+ * {@link EmbeddedReplicaSynchronizer}, which is what makes the mode usable with
+ * embedded databases.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.replication", name = "enabled", havingValue = "true")
+public class ReplicationConfiguration {
+    
+    @Bean
+    public ReplicaDataSources replicaDataSources(DataSourceProperties dataSourceProperties,
+            ReplicationProperties properties, ShardingProperties shardingProperties) {
+        if (shardingProperties.isEnabled()) {
+            throw new IllegalStateException("app.replication and app.sharding cannot be enabled together");
+        }
+        if (properties.getReplicas() == null || properties.getReplicas().isEmpty()) {
+            throw new IllegalStateException("app.replication.enabled is set but no app.replication.replicas are configured");
+        }
+        
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        primary.setPoolName("primary");
+        
+        List<DataSource> replicas = new ArrayList<>();
+        for (ReplicationProperties.ReplicaConfig config : properties.getReplicas()) {
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(config.getUrl())
+                    .username(config.getUsername())
+                    .password(config.getPassword())
+                    .build();
+            replica.setPoolName("replica-" + replicas.size());
+            replicas.add(replica);
+        }
+        return new ReplicaDataSources(primary, replicas);
+    }
+    
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaDataSources dataSources) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(ReplicaRoutingDataSource.PRIMARY, dataSources.primary());
+        for (int replica = 0; replica < dataSources.replicas().size(); replica++) {
+            targets.put(ReplicaRoutingDataSource.replicaKey(replica), dataSources.replicas().get(replica));
+        }
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource();
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(dataSources.primary());
+        routing.afterPropertiesSet();
+        return routing;
+    }
+    
+    @Bean
+    public ReplicaReadRouter readRouter(ReplicaDataSources dataSources, ReplicationProperties properties) {
+        return new ReplicaReadRouter(dataSources.replicas().size(), properties.getMaxLag());
+    }
+    
+    @Bean(initMethod = "start")
+    public EmbeddedReplicaSynchronizer embeddedReplicaSynchronizer(ReplicaDataSources dataSources,
+            ReplicaReadRouter readRouter, ReplicationProperties properties) {
+        return new EmbeddedReplicaSynchronizer(dataSources.primary(), dataSources.replicas(), readRouter,
+                properties.getSyncInterval());
+    }
+}
@@ -0,0 +1,13 @@
+package co.psyke.test_coverage.repository;
+
+import co.psyke.test_coverage.model.CreditAuditEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface CreditAuditRepository extends JpaRepository<CreditAuditEntry, Long> {
+    
+    List<CreditAuditEntry> findByUserIdOrderById(Long userId);
+}
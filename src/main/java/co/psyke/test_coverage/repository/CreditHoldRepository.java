@@ -0,0 +1,29 @@
+package co.psyke.test_coverage.repository;
+
+import co.psyke.test_coverage.model.CreditHold;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+@Repository
+public interface CreditHoldRepository extends JpaRepository<CreditHold, Long> {
+    
+    // Deleting the row is what claims a hold: of concurrent capture, release and expiry only one gets 1 back
+    @Modifying
+    @Query("DELETE FROM CreditHold h WHERE h.id = :id AND h.userId = :userId")
+    int claim(@Param("id") Long id, @Param("userId") Long userId);
+    
+    @Modifying
+    @Query("DELETE FROM CreditHold h WHERE h.id = :id AND h.userId = :userId AND h.expiresAt <= :now")
+    int claimExpired(@Param("id") Long id, @Param("userId") Long userId, @Param("now") Instant now);
+    
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM CreditHold h WHERE h.userId = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
+}
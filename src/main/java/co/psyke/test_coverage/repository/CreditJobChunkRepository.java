@@ -0,0 +1,30 @@
+package co.psyke.test_coverage.repository;
+
+import co.psyke.test_coverage.model.CreditJobChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface CreditJobChunkRepository extends JpaRepository<CreditJobChunk, Long> {
+    List<CreditJobChunk> findByJobIdOrderByStartId(Long jobId);
+    List<CreditJobChunk> findByJobIdAndDoneFalseOrderByStartId(Long jobId);
+    
+    // Only one runner can complete a chunk; the other gets 0 and rolls its update back
+    @Modifying
+    @Query("UPDATE CreditJobChunk c SET c.done = true, c.updatedUsers = :updatedUsers, "
+            + "c.durationMillis = :durationMillis, c.completedAt = :completedAt WHERE c.id = :id AND c.done = false")
+    int complete(@Param("id") Long id, @Param("updatedUsers") Integer updatedUsers,
+            @Param("durationMillis") Long durationMillis, @Param("completedAt") Instant completedAt);
+    
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM CreditJobChunk c WHERE c.jobId = :jobId")
+    int deleteByJobId(@Param("jobId") Long jobId);
+}
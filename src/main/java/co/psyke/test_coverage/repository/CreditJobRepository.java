@@ -0,0 +1,12 @@
+package co.psyke.test_coverage.repository;
+
+import co.psyke.test_coverage.model.CreditJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface CreditJobRepository extends JpaRepository<CreditJob, Long> {
+    List<CreditJob> findByStatus(CreditJob.Status status);
+}
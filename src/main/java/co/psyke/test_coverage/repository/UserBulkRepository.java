@@ -0,0 +1,224 @@
+package co.psyke.test_coverage.repository;
+
+import co.psyke.test_coverage.model.CreditJob;
+import co.psyke.test_coverage.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Set-based access to the users table for bulk operations, where loading
+ * entities one by one through {@link UserRepository} would cost a round trip
+ * and a persistence context entry per row.
+ */
+@Repository
+public class UserBulkRepository {
+    
+    private static final String INSERT_SQL =
+            "INSERT INTO users (username, email, password, full_name, active, credits) VALUES (?, ?, ?, ?, ?, ?)";
+    
+    private static final String EXPORT_SQL =
+            "SELECT id, username, email, password, full_name, active, credits, reserved FROM users "
+                    + "WHERE deleted_at IS NULL ORDER BY id";
+    
+    // The rows as they were before the update, so that each user's change can be reported
+    private static final String APPLY_CREDITS_SQL =
+            "SELECT id, active, credits, reserved, version FROM OLD TABLE "
+                    + "(UPDATE users SET %s, version = version + 1 WHERE id BETWEEN ? AND ? AND deleted_at IS NULL%s)";
+    
+    // Ids of the rows a bulk delete removed or marked
+    private static final String HARD_DELETE_SQL =
+            "SELECT id FROM OLD TABLE (DELETE FROM users WHERE %s AND deleted_at IS NULL)";
+    
+    private static final String SOFT_DELETE_SQL =
+            "SELECT id FROM FINAL TABLE (UPDATE users SET deleted_at = ? WHERE %s AND deleted_at IS NULL)";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    /** Inserts the users in one JDBC batch and returns the generated ids, in order. */
+    public List<Long> insertAll(List<User> users) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_SQL, new String[] {"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement statement, int i) throws SQLException {
+                        bindInsert(statement, users.get(i));
+                    }
+                    
+                    @Override
+                    public int getBatchSize() {
+                        return users.size();
+                    }
+                },
+                keys);
+        
+        List<Long> ids = new ArrayList<>(users.size());
+        for (Map<String, Object> key : keys.getKeyList()) {
+            ids.add(((Number) key.values().iterator().next()).longValue());
+        }
+        return ids;
+    }
+    
+    /** Inserts a single user and returns its generated id. */
+    public Long insert(User user) {
+        KeyHolder key = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT_SQL, new String[] {"id"});
+            bindInsert(statement, user);
+            return statement;
+        }, key);
+        return key.getKey().longValue();
+    }
+    
+    public void deleteById(Long id) {
+        jdbcTemplate.update("DELETE FROM users WHERE id = ?", id);
+    }
+    
+    /**
+     * Streams every user through a forward-only, read-only cursor; rows are
+     * handed over one at a time and never collected.
+     */
+    public void forEachUser(int fetchSize, Consumer<User> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(EXPORT_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, (RowCallbackHandler) row -> consumer.accept(User.builder()
+                .id(row.getLong("id"))
+                .username(row.getString("username"))
+                .email(row.getString("email"))
+                .password(row.getString("password"))
+                .fullName(row.getString("full_name"))
+                .active(row.getBoolean("active"))
+                .credits(row.getDouble("credits"))
+                .reserved(row.getDouble("reserved"))
+                .build()));
+    }
+    
+    /** Lowest and highest user id, or null when there are no users. */
+    public long[] idRange() {
+        return jdbcTemplate.query("SELECT MIN(id), MAX(id) FROM users", row -> {
+            row.next();
+            long min = row.getLong(1);
+            return row.wasNull() ? null : new long[] {min, row.getLong(2)};
+        });
+    }
+    
+    /**
+     * Applies a credit job operation to the users with an id in
+     * {@code [startId, endId]} in one UPDATE statement.
+     *
+     * @return the updated users with their new credits, and by how much they changed
+     */
+    public List<CreditChange> applyCredits(CreditJob.Operation operation, Double amount, boolean activeOnly,
+            long startId, long endId) {
+        String set = switch (operation) {
+            case GRANT -> "credits = credits + ?";
+            case EXPIRE -> "credits = credits - LEAST(?, credits - reserved)";
+        };
+        String filter = (operation == CreditJob.Operation.EXPIRE ? " AND credits > reserved" : "")
+                + (activeOnly ? " AND active" : "");
+        BigDecimal change = BigDecimal.valueOf(amount);
+        
+        return jdbcTemplate.query(APPLY_CREDITS_SQL.formatted(set, filter), (row, rowNumber) -> {
+            BigDecimal credits = row.getBigDecimal("credits");
+            // Same arithmetic as the statement, on the same DECIMAL values
+            BigDecimal updated = switch (operation) {
+                case GRANT -> credits.add(change);
+                case EXPIRE -> credits.subtract(change.min(credits.subtract(row.getBigDecimal("reserved"))));
+            };
+            User user = User.builder()
+                    .id(row.getLong("id"))
+                    .active(row.getBoolean("active"))
+                    .credits(updated.doubleValue())
+                    .reserved(row.getDouble("reserved"))
+                    .version(row.getLong("version") + 1)
+                    .build();
+            return new CreditChange(user, updated.subtract(credits).abs().doubleValue());
+        }, change, startId, endId);
+    }
+    
+    /**
+     * Deletes the users with the given ids that also match the filters, in one
+     * statement. With {@code softDeletedAt} the rows are only marked deleted.
+     *
+     * @return the ids actually deleted
+     */
+    public List<Long> deleteByIds(List<Long> ids, Boolean active, Double maxCredits, Instant softDeletedAt) {
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        return delete("id IN (" + placeholders + ")", new ArrayList<>(ids), active, maxCredits, softDeletedAt);
+    }
+    
+    /** As {@link #deleteByIds}, for the users in {@code [startId, endId]} matching the filters. */
+    public List<Long> deleteInRange(long startId, long endId, Boolean active, Double maxCredits,
+            Instant softDeletedAt) {
+        return delete("id BETWEEN ? AND ?", new ArrayList<>(List.of(startId, endId)), active, maxCredits,
+                softDeletedAt);
+    }
+    
+    /**
+     * Removes up to {@code limit} users soft deleted before {@code deletedBefore},
+     * together with their credit holds. Meant to run in a transaction.
+     *
+     * @return the number of users removed
+     */
+    public int purgeSoftDeleted(Instant deletedBefore, int limit) {
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM users WHERE deleted_at <= ? ORDER BY id FETCH FIRST ? ROWS ONLY",
+                Long.class, deletedBefore, limit);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        jdbcTemplate.update("DELETE FROM credit_holds WHERE user_id IN (" + placeholders + ")", ids.toArray());
+        return jdbcTemplate.update("DELETE FROM users WHERE id IN (" + placeholders + ")", ids.toArray());
+    }
+    
+    private List<Long> delete(String condition, List<Object> args, Boolean active, Double maxCredits,
+            Instant softDeletedAt) {
+        StringBuilder where = new StringBuilder(condition);
+        if (active != null) {
+            where.append(" AND active = ?");
+            args.add(active);
+        }
+        if (maxCredits != null) {
+            where.append(" AND credits <= ?");
+            args.add(BigDecimal.valueOf(maxCredits));
+        }
+        if (softDeletedAt == null) {
+            return jdbcTemplate.queryForList(HARD_DELETE_SQL.formatted(where), Long.class, args.toArray());
+        }
+        args.addFirst(softDeletedAt);
+        return jdbcTemplate.queryForList(SOFT_DELETE_SQL.formatted(where), Long.class, args.toArray());
+    }
+    
+    private static void bindInsert(PreparedStatement statement, User user) throws SQLException {
+        statement.setString(1, user.getUsername());
+        statement.setString(2, user.getEmail());
+        statement.setString(3, user.getPassword());
+        statement.setString(4, user.getFullName());
+        statement.setBoolean(5, user.getActive() == null || user.getActive());
+        statement.setDouble(6, user.getCredits() == null ? 1000.0 : user.getCredits());
+    }
+    
+    public record CreditChange(User user, Double amount) {
+    }
+}
@@ -0,0 +1,75 @@
+package co.psyke.test_coverage.repository;
+
+import co.psyke.test_coverage.config.UserChangeProperties;
+import co.psyke.test_coverage.model.UserChange;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The change log of the current shard. Appends go through {@link JdbcTemplate}
+ * and so join the transaction of the write they record: a change is logged if
+ * and only if it commits.
+ */
+@Repository
+public class UserChangeRepository {
+    
+    private static final String INSERT_SQL =
+            "INSERT INTO user_changes (user_id, kind, node, changed_at) VALUES (?, ?, ?, ?)";
+    
+    private static final String SINCE_SQL =
+            "SELECT seq, user_id, kind, node, changed_at FROM user_changes WHERE seq > ? ORDER BY seq LIMIT ?";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private UserChangeProperties properties;
+    
+    public void append(Long userId, UserChange.Kind kind) {
+        if (properties.isEnabled() && userId != null) {
+            jdbcTemplate.update(INSERT_SQL, userId, kind.name(), properties.getNodeId(), Instant.now());
+        }
+    }
+    
+    public void appendAll(Collection<Long> userIds, UserChange.Kind kind) {
+        if (!properties.isEnabled() || userIds.isEmpty()) {
+            return;
+        }
+        Instant now = Instant.now();
+        List<Object[]> rows = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            rows.add(new Object[] {userId, kind.name(), properties.getNodeId(), now});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+    }
+    
+    /** Up to {@code limit} changes after {@code seq}, in sequence order. */
+    public List<UserChange> since(long seq, int limit) {
+        return jdbcTemplate.query(SINCE_SQL, (row, i) -> UserChange.builder()
+                .seq(row.getLong("seq"))
+                .userId(row.getLong("user_id"))
+                .kind(UserChange.Kind.valueOf(row.getString("kind")))
+                .node(row.getString("node"))
+                .changedAt(row.getObject("changed_at", Instant.class))
+                .build(), seq, limit);
+    }
+    
+    /** The sequence numbers after {@code seq} that are committed so far, in order. */
+    public List<Long> seqsAfter(long seq) {
+        return jdbcTemplate.queryForList("SELECT seq FROM user_changes WHERE seq > ? ORDER BY seq", Long.class, seq);
+    }
+    
+    public long lastSeq() {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(MAX(seq), 0) FROM user_changes", Long.class);
+    }
+    
+    public int prune(Instant before) {
+        return jdbcTemplate.update("DELETE FROM user_changes WHERE changed_at < ?", before);
+    }
+}
@@ -2,12 +2,62 @@ package co.psyke.test_coverage.repository;
 
 import co.psyke.test_coverage.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
     Optional<User> findByEmail(String email);
+    
+    // Credit holds: single conditional updates, so the available balance is checked and taken atomically.
+    // Native because Hibernate would cast the parameters to the full column definition, default included.
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE users SET reserved = reserved + :amount, version = version + 1 "
+            + "WHERE id = :id AND credits - reserved >= :amount AND deleted_at IS NULL", nativeQuery = true)
+    int reserve(@Param("id") Long id, @Param("amount") Double amount);
+    
+    // Holds outlive their user, so both skip deleted users: the row count tells whether there was one
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE users SET credits = credits - :amount, reserved = reserved - :amount, "
+            + "version = version + 1 WHERE id = :id AND deleted_at IS NULL", nativeQuery = true)
+    int capture(@Param("id") Long id, @Param("amount") Double amount);
+    
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE users SET reserved = reserved - :amount, version = version + 1 "
+            + "WHERE id = :id AND deleted_at IS NULL", nativeQuery = true)
+    int release(@Param("id") Long id, @Param("amount") Double amount);
+    
+    // Spends and adds in place, so a concurrent hold, job chunk or other spend is never overwritten by a stale balance
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE users SET credits = credits - :amount, version = version + 1 "
+            + "WHERE id = :id AND credits - reserved >= :amount AND deleted_at IS NULL", nativeQuery = true)
+    int spend(@Param("id") Long id, @Param("amount") Double amount);
+    
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE users SET credits = credits + :amount, version = version + 1 "
+            + "WHERE id = :id AND deleted_at IS NULL", nativeQuery = true)
+    int add(@Param("id") Long id, @Param("amount") Double amount);
+    
+    // The version of an entity save, which can't raise it itself; runs after the save is flushed, in its transaction
+    @Query(value = "SELECT version FROM FINAL TABLE (UPDATE users SET version = version + 1 WHERE id = :id)",
+            nativeQuery = true)
+    Long nextVersion(@Param("id") Long id);
+    
+    // Deletes in one statement, the row count telling whether the user existed
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query(value = "DELETE FROM users WHERE id = :id AND deleted_at IS NULL", nativeQuery = true)
+    int hardDelete(@Param("id") Long id);
+    
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE users SET deleted_at = :now WHERE id = :id AND deleted_at IS NULL", nativeQuery = true)
+    int softDelete(@Param("id") Long id, @Param("now") Instant now);
 }
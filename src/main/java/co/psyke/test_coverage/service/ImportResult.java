@@ -0,0 +1,51 @@
+package co.psyke.test_coverage.service;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk import: how many rows made it in, and why the others did not.
+ */
+@Getter
+public class ImportResult {
+    
+    private long imported;
+    private long failed;
+    private final List<RowError> errors = new ArrayList<>();
+    
+    @Getter(AccessLevel.NONE)
+    private final int maxReportedErrors;
+    
+    public ImportResult(int maxReportedErrors) {
+        this.maxReportedErrors = maxReportedErrors;
+    }
+    
+    void imported() {
+        imported++;
+    }
+    
+    void failed(long line, String message) {
+        failed++;
+        if (errors.size() < maxReportedErrors) {
+            errors.add(new RowError(line, message));
+        }
+    }
+    
+    public boolean isTruncated() {
+        return failed > errors.size();
+    }
+    
+    @Getter
+    public static class RowError {
+        private final long line;
+        private final String message;
+        
+        public RowError(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+    }
+}
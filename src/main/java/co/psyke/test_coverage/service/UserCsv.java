@@ -0,0 +1,85 @@
+package co.psyke.test_coverage.service;
+
+import co.psyke.test_coverage.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal RFC 4180 handling for the bulk CSV format: comma separated, fields
+ * quoted when they contain commas, quotes or line breaks. A record continues
+ * on the next line while one of its quoted fields is still open.
+ */
+final class UserCsv {
+    
+    private UserCsv() {
+    }
+    
+    static String header(boolean passwords) {
+        return passwords ? "id,username,email,password,fullName,active,credits" : "id,username,email,fullName,active,credits";
+    }
+    
+    // Escaped quotes come in pairs, so an odd count leaves a field open
+    static boolean unterminated(String record) {
+        int quotes = 0;
+        for (int i = 0; i < record.length(); i++) {
+            if (record.charAt(i) == '"') {
+                quotes++;
+            }
+        }
+        return quotes % 2 != 0;
+    }
+    
+    static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+    
+    static void appendRow(StringBuilder out, User user, boolean passwords) {
+        out.append(user.getId()).append(',');
+        appendField(out, user.getUsername()).append(',');
+        appendField(out, user.getEmail()).append(',');
+        if (passwords) {
+            appendField(out, user.getPassword()).append(',');
+        }
+        appendField(out, user.getFullName()).append(',');
+        out.append(user.getActive()).append(',');
+        out.append(user.getCredits()).append('\n');
+    }
+    
+    private static StringBuilder appendField(StringBuilder out, String value) {
+        if (value == null) {
+            return out;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return out.append(value);
+        }
+        return out.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+}
@@ -0,0 +1,47 @@
+package co.psyke.test_coverage.service;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Formats supported by bulk import and export.
+ */
+public enum UserFormat {
+    
+    CSV(new MediaType("text", "csv")),
+    NDJSON(MediaType.APPLICATION_NDJSON);
+    
+    private final MediaType mediaType;
+    
+    UserFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+    
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+    
+    public String getExtension() {
+        return name().toLowerCase();
+    }
+    
+    public static UserFormat fromName(String name) {
+        for (UserFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported format: " + name);
+    }
+    
+    public static UserFormat fromContentType(String contentType) {
+        if (contentType != null) {
+            MediaType type = MediaType.parseMediaType(contentType);
+            for (UserFormat format : values()) {
+                if (format.mediaType.isCompatibleWith(type)) {
+                    return format;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Unsupported content type: " + contentType);
+    }
+}
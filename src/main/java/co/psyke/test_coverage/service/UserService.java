@@ -1,13 +1,38 @@
 package co.psyke.test_coverage.service;
 
+import co.psyke.test_coverage.aggregates.CreditAggregates;
+import co.psyke.test_coverage.audit.CreditAuditPipeline;
+import co.psyke.test_coverage.cache.UserETagCache;
+import co.psyke.test_coverage.config.CreditHoldProperties;
+import co.psyke.test_coverage.config.UserDeletionProperties;
+import co.psyke.test_coverage.exception.HoldNotFoundException;
 import co.psyke.test_coverage.exception.InsufficientCreditsException;
+import co.psyke.test_coverage.holds.HoldExpiryWheel;
+import co.psyke.test_coverage.holds.HoldKey;
+import co.psyke.test_coverage.model.CreditHold;
 import co.psyke.test_coverage.model.User;
+import co.psyke.test_coverage.model.UserChange;
+import co.psyke.test_coverage.replication.ReadRouter;
+import co.psyke.test_coverage.repository.CreditHoldRepository;
+import co.psyke.test_coverage.repository.UserBulkRepository;
+import co.psyke.test_coverage.repository.UserChangeRepository;
 import co.psyke.test_coverage.repository.UserRepository;
+import co.psyke.test_coverage.sharding.ShardRouter;
+import co.psyke.test_coverage.stream.CreditEvent;
+import co.psyke.test_coverage.stream.CreditEventBroadcaster;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Supplier;
 
 @Service
 public class UserService {
@@ -15,52 +40,205 @@ public class UserService {
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    @Autowired
+    private ReadRouter readRouter;
+    
+    @Autowired
+    private UserETagCache userETagCache;
+    
+    @Autowired
+    private CreditEventBroadcaster creditEventBroadcaster;
+    
+    @Autowired
+    private CreditAuditPipeline creditAuditPipeline;
+    
+    @Autowired
+    private CreditHoldRepository creditHoldRepository;
+    
+    @Autowired
+    private HoldExpiryWheel holdExpiryWheel;
+    
+    @Autowired
+    private CreditHoldProperties creditHoldProperties;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private CreditAggregates creditAggregates;
+    
+    @Autowired
+    private UserBulkRepository userBulkRepository;
+    
+    @Autowired
+    private UserDeletionProperties deletionProperties;
+    
+    @Autowired
+    private UserChangeRepository userChangeRepository;
+    
     // Create
     public User createUser(User user) {
-        return userRepository.save(user);
+        int shard = shardRouter.shardForNewUser(user);
+        User created = shardRouter.onShard(shard,
+                () -> logged(UserChange.Kind.CREATED, () -> userRepository.save(user)));
+        register(shard, created);
+        return saved(created);
+    }
+    
+    public List<User> createUsers(List<User> users) {
+        Map<Integer, List<User>> byShard = new TreeMap<>();
+        for (User user : users) {
+            byShard.computeIfAbsent(shardRouter.shardForNewUser(user), shard -> new ArrayList<>()).add(user);
+        }
+        
+        List<User> created = new ArrayList<>(users.size());
+        byShard.forEach((shard, batch) -> {
+            List<User> saved = shardRouter.onShard(shard, () -> transactionTemplate.execute(status -> {
+                List<User> inserted = userRepository.saveAll(batch);
+                userChangeRepository.appendAll(inserted.stream().map(User::getId).toList(), UserChange.Kind.CREATED);
+                return inserted;
+            }));
+            for (User user : saved) {
+                register(shard, user);
+                created.add(saved(user));
+            }
+        });
+        return created;
     }
     
     // Read
     public Optional<User> getUserById(Long id) {
-        return userRepository.findById(id);
+        return readRouter.read(id, () -> shardRouter.onShardOf(id, () -> userRepository.findById(id)));
     }
     
     public Optional<User> getUserByUsername(String username) {
-        return userRepository.findByUsername(username);
+        return lookup(() -> shardRouter.shardForUsername(username)
+                .flatMap(shard -> shardRouter.onShard(shard, () -> userRepository.findByUsername(username))));
     }
     
     public Optional<User> getUserByEmail(String email) {
-        return userRepository.findByEmail(email);
+        return lookup(() -> shardRouter.shardForEmail(email)
+                .flatMap(shard -> shardRouter.onShard(shard, () -> userRepository.findByEmail(email))));
     }
     
     public List<User> getAllUsers() {
-        return userRepository.findAll();
+        List<User> users = shardRouter.scatter(userRepository::findAll);
+        if (shardRouter.shardCount() > 1) {
+            users.sort(Comparator.comparing(User::getId));
+        }
+        return users;
+    }
+    
+    public long countUsers() {
+        return shardRouter.scatter(() -> List.of(userRepository.count()))
+                .stream()
+                .mapToLong(Long::longValue)
+                .sum();
     }
     
     // Update
     public User updateUser(Long id, User userDetails) {
-        return userRepository.findById(id).map(user -> {
+        return shardRouter.onShardOf(id, () -> userRepository.findById(id).map(user -> {
+            User before = User.builder().id(user.getId()).username(user.getUsername()).email(user.getEmail()).build();
             user.setUsername(userDetails.getUsername());
             user.setEmail(userDetails.getEmail());
             user.setPassword(userDetails.getPassword());
             user.setFullName(userDetails.getFullName());
             user.setActive(userDetails.getActive());
-            return userRepository.save(user);
-        }).orElseThrow(() -> new RuntimeException("User not found with id: " + id));
+            
+            // Directory first: it is what rejects a username taken on another shard
+            shardRouter.renamed(before, user);
+            try {
+                return saved(logged(UserChange.Kind.UPDATED, () -> {
+                    User updated = userRepository.save(user);
+                    updated.setVersion(userRepository.nextVersion(id));
+                    return updated;
+                }));
+            } catch (RuntimeException e) {
+                shardRouter.renamed(user, before);
+                throw e;
+            }
+        })).orElseThrow(() -> new RuntimeException("User not found with id: " + id));
+    }
+    
+    // Delete: a single statement whose row count tells whether the user existed.
+    // Open holds of the user are left to expire, they can no longer be captured.
+    public boolean deleteUser(Long id) {
+        int deleted = shardRouter.onShardOf(id, () -> transactionTemplate.execute(status -> {
+            int count = deletionProperties.isSoft()
+                    ? userRepository.softDelete(id, Instant.now())
+                    : userRepository.hardDelete(id);
+            if (count > 0) {
+                userChangeRepository.append(id, UserChange.Kind.DELETED);
+            }
+            return count;
+        }));
+        if (deleted == 0) {
+            return false;
+        }
+        deleted(id);
+        return true;
     }
     
-    // Delete
-    public void deleteUser(Long id) {
-        userRepository.deleteById(id);
+    /**
+     * Deletes the users with the given ids, or every user matching the filters
+     * when no ids are given; filters also narrow an id list. Runs as one
+     * statement per chunk of {@code app.deletion.chunk-size} users, each in its
+     * own transaction.
+     *
+     * @return the number of users deleted
+     */
+    public long deleteUsers(List<Long> ids, Boolean active, Double maxCredits) {
+        boolean byIds = ids != null && !ids.isEmpty();
+        if (!byIds && active == null && maxCredits == null) {
+            throw new IllegalArgumentException("Give the ids or at least one filter of the users to delete");
+        }
+        Instant softDeletedAt = deletionProperties.isSoft() ? Instant.now() : null;
+        int chunkSize = deletionProperties.getChunkSize();
+        
+        List<Long> deleted = new ArrayList<>();
+        if (byIds) {
+            Map<Integer, List<Long>> byShard = new TreeMap<>();
+            for (Long id : ids) {
+                byShard.computeIfAbsent(shardRouter.shardForId(id), shard -> new ArrayList<>()).add(id);
+            }
+            byShard.forEach((shard, shardIds) -> {
+                for (int from = 0; from < shardIds.size(); from += chunkSize) {
+                    List<Long> chunk = shardIds.subList(from, Math.min(from + chunkSize, shardIds.size()));
+                    deleted.addAll(shardRouter.onShard(shard, () -> loggedDeletes(
+                            () -> userBulkRepository.deleteByIds(chunk, active, maxCredits, softDeletedAt))));
+                }
+            });
+        } else {
+            // Shard k only holds every n-th id, so a range n times wider still holds chunk-size users
+            long width = (long) chunkSize * shardRouter.shardCount();
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                int rangeShard = shard;
+                long[] range = shardRouter.onShard(shard, userBulkRepository::idRange);
+                if (range == null) {
+                    continue;
+                }
+                for (long start = range[0]; start <= range[1]; start += width) {
+                    long from = start;
+                    deleted.addAll(shardRouter.onShard(rangeShard, () -> loggedDeletes(() -> userBulkRepository
+                            .deleteInRange(from, from + width - 1, active, maxCredits, softDeletedAt))));
+                }
+            }
+        }
+        deleted.forEach(this::deleted);
+        return deleted.size();
     }
     
     public boolean userExists(Long id) {
-        return userRepository.existsById(id);
+        return shardRouter.onShardOf(id, () -> userRepository.existsById(id));
     }
     
-    // Credits Management
+    // Credits Management: the same read as getUserById, whose caller tags the state it returns
     public Double getCredits(Long userId) {
-        return userRepository.findById(userId)
+        return getUserById(userId)
                 .map(User::getCredits)
                 .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
     }
@@ -70,16 +248,19 @@ public class UserService {
             throw new IllegalArgumentException("Amount must be greater than 0");
         }
         
-        return userRepository.findById(userId).map(user -> {
-            if (user.getCredits() < amount) {
+        // Checked and taken in one statement; credits held by open reservations can't be spent
+        User user = shardRouter.onShardOf(userId, () -> logged(UserChange.Kind.CREDITS, () -> {
+            if (userRepository.spend(userId, amount) == 0) {
+                User found = current(userId);
+                double available = found.getCredits() - found.getReserved();
                 throw new InsufficientCreditsException(
-                    String.format("Crediti insufficienti. Disponibili: %.2f, Richiesti: %.2f", 
-                        user.getCredits(), amount)
+                    String.format("Crediti insufficienti. Disponibili: %.2f, Richiesti: %.2f",
+                        available, amount)
                 );
             }
-            user.setCredits(user.getCredits() - amount);
-            return userRepository.save(user);
-        }).orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
+            return current(userId);
+        }));
+        return creditsChanged(saved(user), CreditEvent.Type.SPEND, amount);
     }
     
     public User addCredits(Long userId, Double amount) {
@@ -87,9 +268,191 @@ public class UserService {
             throw new IllegalArgumentException("Amount must be greater than 0");
         }
         
-        return userRepository.findById(userId).map(user -> {
-            user.setCredits(user.getCredits() + amount);
-            return userRepository.save(user);
-        }).orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
+        User user = shardRouter.onShardOf(userId, () -> logged(UserChange.Kind.CREDITS, () -> {
+            if (userRepository.add(userId, amount) == 0) {
+                throw new RuntimeException("User not found with id: " + userId);
+            }
+            return current(userId);
+        }));
+        return creditsChanged(saved(user), CreditEvent.Type.ADD, amount);
+    }
+    
+    // Called for each user changed by a set-based update that bypassed the entity
+    public void creditsApplied(User user, CreditEvent.Type type, Double amount) {
+        readRouter.written(user.getId());
+        userETagCache.evict(user.getId(), user.getVersion());
+        creditAggregates.updated(user);
+        creditsChanged(user, type, amount);
+    }
+    
+    // Credit Holds
+    public CreditHold reserveCredits(Long userId, Double amount, Duration ttl) {
+        if (amount == null || amount <= 0) {
+            throw new IllegalArgumentException("Amount must be greater than 0");
+        }
+        Duration holdTtl = ttl == null ? creditHoldProperties.getDefaultTtl() : ttl;
+        if (holdTtl.isNegative() || holdTtl.isZero()) {
+            throw new IllegalArgumentException("TTL must be greater than 0");
+        }
+        if (holdTtl.compareTo(creditHoldProperties.getMaxTtl()) > 0) {
+            holdTtl = creditHoldProperties.getMaxTtl();
+        }
+        Instant expiresAt = Instant.now().plus(holdTtl);
+        
+        CreditHold hold = shardRouter.onShardOf(userId, () -> transactionTemplate.execute(status -> {
+            if (userRepository.reserve(userId, amount) == 0) {
+                User user = userRepository.findById(userId)
+                        .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
+                throw new InsufficientCreditsException(
+                    String.format("Crediti insufficienti. Disponibili: %.2f, Richiesti: %.2f",
+                        user.getCredits() - user.getReserved(), amount)
+                );
+            }
+            userChangeRepository.append(userId, UserChange.Kind.RESERVED);
+            return creditHoldRepository.save(CreditHold.builder()
+                    .userId(userId)
+                    .amount(amount)
+                    .expiresAt(expiresAt)
+                    .build());
+        }));
+        holdExpiryWheel.schedule(HoldKey.of(hold), expiresAt);
+        reservedChanged(userId);
+        return hold;
+    }
+    
+    // Turns the hold into a spend: the reserved amount leaves both the balance and the reservation
+    public User captureHold(Long userId, Long holdId) {
+        CreditHold hold = shardRouter.onShardOf(userId, () -> transactionTemplate.execute(status -> {
+            CreditHold claimed = claim(userId, holdId, null);
+            // Throwing rolls the claim back: nothing changes for a hold whose user is gone
+            if (userRepository.capture(userId, claimed.getAmount()) == 0) {
+                throw new RuntimeException("User not found with id: " + userId);
+            }
+            userChangeRepository.append(userId, UserChange.Kind.CREDITS);
+            return claimed;
+        }));
+        holdExpiryWheel.cancel(HoldKey.of(hold));
+        User user = shardRouter.onShardOf(userId, () -> userRepository.findById(userId))
+                .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
+        return creditsChanged(saved(user), CreditEvent.Type.SPEND, hold.getAmount());
+    }
+    
+    public void releaseHold(Long userId, Long holdId) {
+        release(userId, holdId, null);
+    }
+    
+    // Called by the expiry wheel; a hold captured or released in the meantime is simply gone
+    public void expireHold(HoldKey key) {
+        try {
+            release(key.userId(), key.holdId(), Instant.now());
+        } catch (HoldNotFoundException e) {
+            // Nothing left to expire
+        }
+    }
+    
+    private void release(Long userId, Long holdId, Instant expiredBy) {
+        CreditHold hold = shardRouter.onShardOf(userId, () -> transactionTemplate.execute(status -> {
+            CreditHold claimed = claim(userId, holdId, expiredBy);
+            // A hold of a deleted user is just removed, so it still expires
+            if (userRepository.release(userId, claimed.getAmount()) > 0) {
+                userChangeRepository.append(userId, UserChange.Kind.RESERVED);
+            }
+            return claimed;
+        }));
+        holdExpiryWheel.cancel(HoldKey.of(hold));
+        reservedChanged(userId);
+    }
+    
+    // Deletes the hold row, which only one of concurrent capture, release and expiry can do
+    private CreditHold claim(Long userId, Long holdId, Instant expiredBy) {
+        CreditHold hold = creditHoldRepository.findById(holdId)
+                .filter(found -> found.getUserId().equals(userId))
+                .orElseThrow(() -> new HoldNotFoundException("Hold " + holdId + " not found for user " + userId));
+        int claimed = expiredBy == null
+                ? creditHoldRepository.claim(holdId, userId)
+                : creditHoldRepository.claimExpired(holdId, userId, expiredBy);
+        if (claimed == 0) {
+            throw new HoldNotFoundException("Hold " + holdId + " not found for user " + userId);
+        }
+        return hold;
+    }
+    
+    // Re-read after a credit query, which cleared the persistence context
+    private User current(Long userId) {
+        return userRepository.findById(userId)
+                .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
+    }
+    
+    // Lookups by username or email can't know the user up front: a replica answer is only trusted if that user has no pending write
+    private Optional<User> lookup(Supplier<Optional<User>> query) {
+        Optional<User> user = readRouter.read(null, query);
+        boolean stale = user.map(found -> readRouter.isStale(found.getId())).orElseGet(readRouter::hasPendingWrites);
+        return stale ? query.get() : user;
+    }
+    
+    // Adds a freshly inserted user to the directory, undoing the insert if the username is taken elsewhere
+    private void register(int shard, User user) {
+        if (user == null) {
+            return;
+        }
+        try {
+            shardRouter.registered(user);
+        } catch (RuntimeException e) {
+            shardRouter.runOnShard(shard, () -> transactionTemplate.executeWithoutResult(status -> {
+                userRepository.deleteById(user.getId());
+                userChangeRepository.append(user.getId(), UserChange.Kind.DELETED);
+            }));
+            throw e;
+        }
+    }
+    
+    // Writes and logs the change in one transaction, so other instances learn of exactly the writes that commit
+    private User logged(UserChange.Kind kind, Supplier<User> write) {
+        return transactionTemplate.execute(status -> {
+            User user = write.get();
+            userChangeRepository.append(user.getId(), kind);
+            return user;
+        });
+    }
+    
+    private List<Long> loggedDeletes(Supplier<List<Long>> delete) {
+        return transactionTemplate.execute(status -> {
+            List<Long> ids = delete.get();
+            userChangeRepository.appendAll(ids, UserChange.Kind.DELETED);
+            return ids;
+        });
+    }
+    
+    // Forgets a deleted user everywhere it is cached or indexed
+    private void deleted(Long id) {
+        shardRouter.removed(id);
+        readRouter.written(id);
+        userETagCache.deleted(id);
+        creditAggregates.removed(id);
+    }
+    
+    // Keeps the ETag and the credit aggregates of the written state current; the version orders late calls
+    private User saved(User user) {
+        if (user != null) {
+            readRouter.written(user.getId());
+            userETagCache.put(user);
+            creditAggregates.updated(user);
+        }
+        return user;
+    }
+    
+    // The reserved amount is part of the user representation: re-read for the tag and version of the new state
+    private void reservedChanged(Long userId) {
+        readRouter.written(userId);
+        shardRouter.onShardOf(userId, () -> userRepository.findById(userId)).ifPresent(this::saved);
+    }
+    
+    private User creditsChanged(User user, CreditEvent.Type type, Double amount) {
+        if (user != null) {
+            CreditEvent event = CreditEvent.of(user, type, amount);
+            creditEventBroadcaster.publish(event);
+            creditAuditPipeline.publish(event);
+        }
+        return user;
     }
 }
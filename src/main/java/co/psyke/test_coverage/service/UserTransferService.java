@@ -0,0 +1,339 @@
+package co.psyke.test_coverage.service;
+
+import co.psyke.test_coverage.aggregates.CreditAggregates;
+import co.psyke.test_coverage.config.UserTransferProperties;
+import co.psyke.test_coverage.model.User;
+import co.psyke.test_coverage.model.UserChange;
+import co.psyke.test_coverage.replication.ReadRouter;
+import co.psyke.test_coverage.repository.UserBulkRepository;
+import co.psyke.test_coverage.repository.UserChangeRepository;
+import co.psyke.test_coverage.sharding.ShardRouter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Bulk import and export of users in CSV or NDJSON.
+ * <p>
+ * Both directions stream: import reads the body line by line from a channel
+ * and inserts it in JDBC batches of {@code app.transfer.batch-size}, export
+ * walks a forward-only cursor and writes through a fixed-size buffer. Heap
+ * usage depends on the batch size, never on the number of users. Passwords
+ * are only exported when asked for.
+ */
+@Service
+public class UserTransferService {
+    
+    private static final ObjectMapper JSON = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+    
+    @Autowired
+    private UserBulkRepository userBulkRepository;
+    
+    @Autowired
+    private UserChangeRepository userChangeRepository;
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    @Autowired
+    private ReadRouter readRouter;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private UserTransferProperties properties;
+    
+    @Autowired
+    private CreditAggregates creditAggregates;
+    
+    // Import
+    public ImportResult importUsers(ReadableByteChannel channel, UserFormat format) throws IOException {
+        ImportResult result = new ImportResult(properties.getMaxReportedErrors());
+        BufferedReader reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8), IO_BUFFER_SIZE);
+        
+        Map<String, Integer> columns = null;
+        List<Row> chunk = new ArrayList<>(properties.getBatchSize());
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            long start = ++lineNumber;
+            if (line.isBlank()) {
+                continue;
+            }
+            if (format == UserFormat.CSV) {
+                // A quoted field may hold line breaks, which readLine() split off
+                String next;
+                while (UserCsv.unterminated(line) && (next = reader.readLine()) != null) {
+                    lineNumber++;
+                    line = line + "\n" + next;
+                }
+            }
+            if (format == UserFormat.CSV && columns == null) {
+                columns = csvColumns(line);
+                continue;
+            }
+            
+            try {
+                User user = format == UserFormat.CSV ? fromCsv(line, columns) : fromJson(line);
+                validate(user);
+                chunk.add(new Row(start, user));
+            } catch (IllegalArgumentException e) {
+                result.failed(start, e.getMessage());
+            }
+            if (chunk.size() >= properties.getBatchSize()) {
+                flush(chunk, result);
+                chunk.clear();
+            }
+        }
+        flush(chunk, result);
+        return result;
+    }
+    
+    // Export
+    public long exportUsers(WritableByteChannel channel, UserFormat format, boolean passwords) throws IOException {
+        ChannelWriter writer = new ChannelWriter(channel);
+        long[] exported = {0};
+        try {
+            if (format == UserFormat.CSV) {
+                writer.write(UserCsv.header(passwords) + "\n");
+            }
+            StringBuilder row = new StringBuilder(256);
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                shardRouter.runOnShard(shard, () -> readRouter.read(null, () -> {
+                    userBulkRepository.forEachUser(properties.getFetchSize(), user -> {
+                        row.setLength(0);
+                        if (format == UserFormat.CSV) {
+                            UserCsv.appendRow(row, user, passwords);
+                        } else {
+                            row.append(toJson(user, passwords)).append('\n');
+                        }
+                        writer.write(row);
+                        exported[0]++;
+                    });
+                    return null;
+                }));
+            }
+            writer.flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return exported[0];
+    }
+    
+    // Inserts a chunk as one batch per shard; a failing batch is rolled back and retried row by row to find the culprits
+    private void flush(List<Row> chunk, ImportResult result) {
+        Map<Integer, List<Row>> byShard = new TreeMap<>();
+        for (Row row : chunk) {
+            byShard.computeIfAbsent(shardRouter.shardForNewUser(row.user), shard -> new ArrayList<>()).add(row);
+        }
+        byShard.forEach((shard, rows) -> shardRouter.runOnShard(shard, () -> insertRows(rows, result)));
+    }
+    
+    private void insertRows(List<Row> rows, ImportResult result) {
+        List<User> users = rows.stream().map(row -> row.user).toList();
+        List<Row> inserted = new ArrayList<>(rows.size());
+        try {
+            List<Long> ids = transactionTemplate.execute(status -> {
+                List<Long> created = userBulkRepository.insertAll(users);
+                userChangeRepository.appendAll(created, UserChange.Kind.CREATED);
+                return created;
+            });
+            for (int i = 0; i < rows.size(); i++) {
+                rows.get(i).user.setId(ids.get(i));
+                inserted.add(rows.get(i));
+            }
+        } catch (DataAccessException batchFailure) {
+            for (Row row : rows) {
+                try {
+                    row.user.setId(transactionTemplate.execute(status -> {
+                        Long id = userBulkRepository.insert(row.user);
+                        userChangeRepository.append(id, UserChange.Kind.CREATED);
+                        return id;
+                    }));
+                    inserted.add(row);
+                } catch (DataAccessException e) {
+                    result.failed(row.line, describe(e));
+                }
+            }
+        }
+        
+        for (Row row : inserted) {
+            try {
+                shardRouter.registered(row.user);
+            } catch (DataAccessException e) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    userBulkRepository.deleteById(row.user.getId());
+                    userChangeRepository.append(row.user.getId(), UserChange.Kind.DELETED);
+                });
+                result.failed(row.line, describe(e));
+                continue;
+            }
+            readRouter.written(row.user.getId());
+            creditAggregates.updated(row.user);
+            result.imported();
+        }
+    }
+    
+    private static Map<String, Integer> csvColumns(String header) {
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = UserCsv.parseLine(header);
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().replace("_", "").toLowerCase(Locale.ROOT), i);
+        }
+        for (String required : List.of("username", "email", "password")) {
+            if (!columns.containsKey(required)) {
+                throw new IllegalArgumentException("CSV header is missing the " + required + " column");
+            }
+        }
+        return columns;
+    }
+    
+    private static User fromCsv(String line, Map<String, Integer> columns) {
+        List<String> fields = UserCsv.parseLine(line);
+        String active = field(fields, columns, "active");
+        String credits = field(fields, columns, "credits");
+        try {
+            return User.builder()
+                    .username(field(fields, columns, "username"))
+                    .email(field(fields, columns, "email"))
+                    .password(field(fields, columns, "password"))
+                    .fullName(field(fields, columns, "fullname"))
+                    .active(active == null ? true : Boolean.parseBoolean(active))
+                    .credits(credits == null ? 1000.0 : Double.parseDouble(credits))
+                    .build();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid credits: " + credits);
+        }
+    }
+    
+    private static String field(List<String> fields, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= fields.size() || fields.get(index).isEmpty()) {
+            return null;
+        }
+        return fields.get(index);
+    }
+    
+    private static User fromJson(String line) {
+        try {
+            User user = JSON.readValue(line, User.class);
+            if (user.getActive() == null) {
+                user.setActive(true);
+            }
+            if (user.getCredits() == null) {
+                user.setCredits(1000.0);
+            }
+            return user;
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid JSON: " + e.getOriginalMessage());
+        }
+    }
+    
+    private static String toJson(User user, boolean passwords) {
+        try {
+            if (passwords) {
+                return JSON.writeValueAsString(user);
+            }
+            ObjectNode node = JSON.valueToTree(user);
+            node.remove("password");
+            return JSON.writeValueAsString(node);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize user " + user.getId(), e);
+        }
+    }
+    
+    private static void validate(User user) {
+        if (isBlank(user.getUsername()) || isBlank(user.getEmail()) || isBlank(user.getPassword())) {
+            throw new IllegalArgumentException("username, email and password are required");
+        }
+        if (user.getCredits() < 0) {
+            throw new IllegalArgumentException("credits must not be negative");
+        }
+        // Ids are always assigned by the target database
+        user.setId(null);
+    }
+    
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+    
+    private static String describe(DataAccessException e) {
+        String message = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+        int newline = message == null ? -1 : message.indexOf('\n');
+        return newline < 0 ? message : message.substring(0, newline);
+    }
+    
+    private static final class Row {
+        private final long line;
+        private final User user;
+        
+        private Row(long line, User user) {
+            this.line = line;
+            this.user = user;
+        }
+    }
+    
+    // Encodes rows into a fixed buffer and writes it to the channel whenever it fills up
+    private static final class ChannelWriter {
+        
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_SIZE);
+        
+        private ChannelWriter(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+        
+        private void write(CharSequence text) {
+            byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > buffer.remaining()) {
+                flush();
+            }
+            if (bytes.length > buffer.capacity()) {
+                writeFully(ByteBuffer.wrap(bytes));
+            } else {
+                buffer.put(bytes);
+            }
+        }
+        
+        private void flush() {
+            buffer.flip();
+            writeFully(buffer);
+            buffer.clear();
+        }
+        
+        private void writeFully(ByteBuffer source) {
+            try {
+                while (source.hasRemaining()) {
+                    channel.write(source);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package co.psyke.test_coverage.sharding;
+
+import co.psyke.test_coverage.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Router used when {@code app.sharding.enabled} is set, see {@link ShardRouter}
+ * for the partitioning scheme. Scatter queries run on virtual threads, one per
+ * shard.
+ */
+public class HashShardRouter implements ShardRouter, AutoCloseable {
+    
+    private final int shardCount;
+    private final UserDirectory directory;
+    private final ExecutorService scatterExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    
+    public HashShardRouter(int shardCount, UserDirectory directory) {
+        this.shardCount = shardCount;
+        this.directory = directory;
+    }
+    
+    @Override
+    public int shardCount() {
+        return shardCount;
+    }
+    
+    @Override
+    public int shardForId(Long id) {
+        return (int) Math.floorMod(id - 1, (long) shardCount);
+    }
+    
+    @Override
+    public int shardForNewUser(User user) {
+        // Spread the username hash so that similar names don't pile up on one shard
+        int hash = Objects.hashCode(user.getUsername()) * 0x9E3779B9;
+        return Math.floorMod(hash ^ (hash >>> 16), shardCount);
+    }
+    
+    @Override
+    public Optional<Integer> shardForUsername(String username) {
+        return directory.findIdByUsername(username).map(this::shardForId);
+    }
+    
+    @Override
+    public Optional<Integer> shardForEmail(String email) {
+        return directory.findIdByEmail(email).map(this::shardForId);
+    }
+    
+    @Override
+    public <T> T onShard(int shard, Supplier<T> work) {
+        if (shard < 0 || shard >= shardCount) {
+            throw new IllegalArgumentException("No such shard: " + shard);
+        }
+        Integer previous = ShardContext.set(shard);
+        try {
+            return work.get();
+        } finally {
+            ShardContext.set(previous);
+        }
+    }
+    
+    @Override
+    public <T> List<T> scatter(Supplier<List<T>> query) {
+        List<Future<List<T>>> parts = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            int target = shard;
+            parts.add(scatterExecutor.submit(() -> onShard(target, query)));
+        }
+        
+        List<T> results = new ArrayList<>();
+        for (Future<List<T>> part : parts) {
+            try {
+                results.addAll(part.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while querying shards", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw new IllegalStateException("Shard query failed", e.getCause());
+            }
+        }
+        return results;
+    }
+    
+    @Override
+    public void registered(User user) {
+        directory.register(user.getId(), user.getUsername(), user.getEmail());
+    }
+    
+    @Override
+    public void renamed(User before, User after) {
+        if (!Objects.equals(before.getUsername(), after.getUsername())
+                || !Objects.equals(before.getEmail(), after.getEmail())) {
+            directory.update(after.getId(), after.getUsername(), after.getEmail());
+        }
+    }
+    
+    @Override
+    public void removed(Long id) {
+        directory.remove(id);
+    }
+    
+    @Override
+    public void close() {
+        scatterExecutor.shutdownNow();
+    }
+}
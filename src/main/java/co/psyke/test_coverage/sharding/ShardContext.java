@@ -0,0 +1,27 @@
+package co.psyke.test_coverage.sharding;
+
+/**
+ * Shard selected for the current thread, read by {@link ShardRoutingDataSource}
+ * when a transaction asks for a connection.
+ */
+public final class ShardContext {
+    
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+    
+    private ShardContext() {
+    }
+    
+    public static Integer current() {
+        return CURRENT.get();
+    }
+    
+    static Integer set(Integer shard) {
+        Integer previous = CURRENT.get();
+        if (shard == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(shard);
+        }
+        return previous;
+    }
+}
@@ -0,0 +1,82 @@
+package co.psyke.test_coverage.sharding;
+
+import co.psyke.test_coverage.config.ShardingProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Connection pools of the configured shards. Creating it also migrates every
+ * shard with the same {@code db/migration} scripts as the durable mode, then
+ * gives the users table a per-shard identity ({@code shard + 1} modulo
+ * {@code shardCount}, counting on from the highest id already stored) so that
+ * ids never collide and the owning shard can be computed from the id alone.
+ */
+public class ShardDataSources implements AutoCloseable {
+    
+    private static final String MIGRATIONS = "classpath:db/migration";
+    
+    private static final String USERS_IDENTITY = "ALTER TABLE users ALTER COLUMN id RESTART WITH %d SET INCREMENT BY %d";
+    
+    private final List<DataSource> shards = new ArrayList<>();
+    
+    public ShardDataSources(ShardingProperties properties) {
+        List<ShardingProperties.ShardConfig> configs = properties.getShards();
+        if (configs == null || configs.isEmpty()) {
+            throw new IllegalStateException("app.sharding.enabled is set but no app.sharding.shards are configured");
+        }
+        for (int shard = 0; shard < configs.size(); shard++) {
+            ShardingProperties.ShardConfig config = configs.get(shard);
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(config.getUrl())
+                    .username(config.getUsername())
+                    .password(config.getPassword())
+                    .build();
+            dataSource.setPoolName("shard-" + shard);
+            // Every table on every shard: jobs are only used on the first, holds, chunks, audit rows and changes
+            // live with their users
+            Flyway.configure()
+                    .dataSource(dataSource)
+                    .locations(MIGRATIONS)
+                    .load()
+                    .migrate();
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            // The next free id of this shard, so a restarted file-backed shard doesn't hand out ids again
+            long next = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) + 1 FROM users", Long.class);
+            jdbcTemplate.execute(USERS_IDENTITY.formatted(next + Math.floorMod(shard + 1 - next, configs.size()),
+                    configs.size()));
+            shards.add(dataSource);
+        }
+    }
+    
+    public int count() {
+        return shards.size();
+    }
+    
+    public DataSource get(int shard) {
+        return shards.get(shard);
+    }
+    
+    public List<DataSource> all() {
+        return List.copyOf(shards);
+    }
+    
+    @Override
+    public void close() {
+        for (DataSource shard : shards) {
+            if (shard instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    // Shutting down anyway
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package co.psyke.test_coverage.sharding;
+
+import co.psyke.test_coverage.model.User;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Decides which shard owns a user and runs repository work against it.
+ * <p>
+ * Users are partitioned by id: shard {@code k} of {@code n} generates the ids
+ * {@code k+1, k+1+n, k+1+2n, ...}, so the owner of an id is known without a
+ * lookup. Usernames and emails can change, so they are resolved through a
+ * global directory that also enforces username uniqueness across shards.
+ */
+public interface ShardRouter {
+    
+    int shardCount();
+    
+    int shardForId(Long id);
+    
+    // Shard receiving a user that has no id yet
+    int shardForNewUser(User user);
+    
+    Optional<Integer> shardForUsername(String username);
+    
+    Optional<Integer> shardForEmail(String email);
+    
+    <T> T onShard(int shard, Supplier<T> work);
+    
+    default <T> T onShardOf(Long id, Supplier<T> work) {
+        return onShard(shardForId(id), work);
+    }
+    
+    default void runOnShard(int shard, Runnable work) {
+        onShard(shard, () -> {
+            work.run();
+            return null;
+        });
+    }
+    
+    // Runs the query on every shard in parallel and concatenates the results
+    <T> List<T> scatter(Supplier<List<T>> query);
+    
+    // Directory maintenance, called after the owning shard has been written
+    void registered(User user);
+    
+    void renamed(User before, User after);
+    
+    void removed(Long id);
+}
@@ -0,0 +1,46 @@
+package co.psyke.test_coverage.sharding;
+
+import co.psyke.test_coverage.config.ShardingProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Replaces the single datasource with one routing across the configured
+ * shards. JPA keeps working unchanged: the shard is picked per transaction
+ * from {@link ShardContext}, which {@link HashShardRouter} sets around every
+ * repository call made by the service layer.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.sharding", name = "enabled", havingValue = "true")
+public class ShardingConfiguration {
+    
+    @Bean
+    public ShardDataSources shardDataSources(ShardingProperties properties) {
+        return new ShardDataSources(properties);
+    }
+    
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardDataSources shards) {
+        Map<Object, Object> targets = new HashMap<>();
+        for (int shard = 0; shard < shards.count(); shard++) {
+            targets.put(shard, shards.get(shard));
+        }
+        ShardRoutingDataSource routing = new ShardRoutingDataSource();
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(shards.get(0));
+        routing.afterPropertiesSet();
+        return routing;
+    }
+    
+    @Bean
+    public HashShardRouter shardRouter(ShardDataSources shards) {
+        return new HashShardRouter(shards.count(), new UserDirectory(shards.get(0)));
+    }
+}
@@ -0,0 +1,67 @@
+package co.psyke.test_coverage.sharding;
+
+import co.psyke.test_coverage.model.User;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Router used when sharding is disabled: everything runs inline against the
+ * single configured datasource and there is no directory to maintain.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.sharding", name = "enabled", havingValue = "false", matchIfMissing = true)
+public class SingleShardRouter implements ShardRouter {
+    
+    private static final Optional<Integer> ONLY_SHARD = Optional.of(0);
+    
+    @Override
+    public int shardCount() {
+        return 1;
+    }
+    
+    @Override
+    public int shardForId(Long id) {
+        return 0;
+    }
+    
+    @Override
+    public int shardForNewUser(User user) {
+        return 0;
+    }
+    
+    @Override
+    public Optional<Integer> shardForUsername(String username) {
+        return ONLY_SHARD;
+    }
+    
+    @Override
+    public Optional<Integer> shardForEmail(String email) {
+        return ONLY_SHARD;
+    }
+    
+    @Override
+    public <T> T onShard(int shard, Supplier<T> work) {
+        return work.get();
+    }
+    
+    @Override
+    public <T> List<T> scatter(Supplier<List<T>> query) {
+        return query.get();
+    }
+    
+    @Override
+    public void registered(User user) {
+    }
+    
+    @Override
+    public void renamed(User before, User after) {
+    }
+    
+    @Override
+    public void removed(Long id) {
+    }
+}
@@ -0,0 +1,56 @@
+package co.psyke.test_coverage.sharding;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Global username/email to id index, stored on the first shard. The unique
+ * constraint on {@code username} is what keeps usernames unique across shards.
+ */
+public class UserDirectory {
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public UserDirectory(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS user_directory (
+                    user_id BIGINT PRIMARY KEY,
+                    username VARCHAR(255) NOT NULL UNIQUE,
+                    email VARCHAR(255) NOT NULL
+                )""");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_user_directory_email ON user_directory(email)");
+    }
+    
+    public void register(Long userId, String username, String email) {
+        jdbcTemplate.update("INSERT INTO user_directory (user_id, username, email) VALUES (?, ?, ?)",
+                userId, username, email);
+    }
+    
+    public void update(Long userId, String username, String email) {
+        jdbcTemplate.update("UPDATE user_directory SET username = ?, email = ? WHERE user_id = ?",
+                username, email, userId);
+    }
+    
+    public void remove(Long userId) {
+        jdbcTemplate.update("DELETE FROM user_directory WHERE user_id = ?", userId);
+    }
+    
+    public Optional<Long> findIdByUsername(String username) {
+        return first(jdbcTemplate.queryForList(
+                "SELECT user_id FROM user_directory WHERE username = ?", Long.class, username));
+    }
+    
+    public Optional<Long> findIdByEmail(String email) {
+        return first(jdbcTemplate.queryForList(
+                "SELECT user_id FROM user_directory WHERE email = ? ORDER BY user_id FETCH FIRST 1 ROWS ONLY",
+                Long.class, email));
+    }
+    
+    private static Optional<Long> first(List<Long> ids) {
+        return ids.isEmpty() ? Optional.empty() : Optional.of(ids.get(0));
+    }
+}
@@ -0,0 +1,30 @@
+package co.psyke.test_coverage.storage;
+
+import co.psyke.test_coverage.config.DurableStorageProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Durable mode, enabled by the {@code durable} profile: the users table lives
+ * in a file-backed H2 database whose schema is owned by the Flyway migrations
+ * in {@code db/migration}, and the store is checkpointed periodically and on
+ * shutdown by {@link H2Checkpointer}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.durable", name = "enabled", havingValue = "true")
+public class DurableStorageConfiguration {
+    
+    @Bean(initMethod = "start")
+    public H2Checkpointer h2Checkpointer(DataSource dataSource, DataSourceProperties dataSourceProperties,
+            DurableStorageProperties properties) {
+        String url = dataSourceProperties.getUrl();
+        if (url == null || !url.startsWith("jdbc:h2:file:")) {
+            throw new IllegalStateException("app.durable.enabled requires a jdbc:h2:file: datasource, got " + url);
+        }
+        return new H2Checkpointer(dataSource, properties.getCheckpointInterval());
+    }
+}
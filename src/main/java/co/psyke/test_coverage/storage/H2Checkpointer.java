@@ -0,0 +1,74 @@
+package co.psyke.test_coverage.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checkpoints a file-backed H2 database every {@code interval}.
+ * <p>
+ * With a write delay, MVStore keeps committed changes in memory and writes
+ * them in the background, so a crash loses at most the last write delay worth
+ * of commits; a checkpoint also rewrites the store header and trims the
+ * chunks reopening has to scan, which keeps recovery time flat as the file
+ * grows. The last checkpoint on shutdown is synced to disk.
+ */
+public class H2Checkpointer implements AutoCloseable {
+    
+    private static final Logger log = LoggerFactory.getLogger(H2Checkpointer.class);
+    
+    private final DataSource dataSource;
+    private final Duration interval;
+    
+    private ScheduledExecutorService scheduler;
+    
+    public H2Checkpointer(DataSource dataSource, Duration interval) {
+        this.dataSource = dataSource;
+        this.interval = interval;
+    }
+    
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("h2-checkpoint")
+                .daemon(true)
+                .factory());
+        scheduler.scheduleWithFixedDelay(this::checkpointQuietly, interval.toMillis(), interval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+    
+    /** Writes every committed change to the database file; {@code sync} also forces it to the disk. */
+    public void checkpoint(boolean sync) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(sync ? "CHECKPOINT SYNC" : "CHECKPOINT");
+        }
+    }
+    
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        try {
+            checkpoint(true);
+        } catch (SQLException e) {
+            log.warn("Final checkpoint failed: {}", e.getMessage());
+        }
+    }
+    
+    private void checkpointQuietly() {
+        try {
+            checkpoint(false);
+        } catch (SQLException | RuntimeException e) {
+            log.warn("Checkpoint failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package co.psyke.test_coverage.stream;
+
+import co.psyke.test_coverage.model.User;
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Value
+public class CreditEvent {
+    
+    public enum Type { SPEND, ADD }
+    
+    // Identifies the change for consumers that may be handed it again
+    UUID id;
+    Long userId;
+    Type type;
+    Double amount;
+    Double credits;
+    Instant timestamp;
+    
+    public static CreditEvent of(User user, Type type, Double amount) {
+        return new CreditEvent(UUID.randomUUID(), user.getId(), type, amount, user.getCredits(), Instant.now());
+    }
+}
@@ -0,0 +1,191 @@
+package co.psyke.test_coverage.stream;
+
+import co.psyke.test_coverage.config.CreditStreamProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fans credit balance changes out to stream subscribers.
+ * <p>
+ * The write path ({@link #publish}) never blocks and never takes a lock: it
+ * iterates copy-on-write subscriber lists and appends to each subscriber's
+ * bounded queue. Every subscriber is drained by its own virtual thread, so a
+ * slow network peer only ever fills its own buffer; once full, the subscriber
+ * is dropped and its stream completed, and the client is expected to reconnect.
+ */
+@Component
+public class CreditEventBroadcaster {
+    
+    private static final Logger log = LoggerFactory.getLogger(CreditEventBroadcaster.class);
+    
+    private final List<Subscription> allUsers = new CopyOnWriteArrayList<>();
+    private final ConcurrentHashMap<Long, List<Subscription>> byUser = new ConcurrentHashMap<>();
+    
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    
+    @Autowired
+    private CreditStreamProperties properties;
+    
+    public CreditEventBroadcaster() {
+    }
+    
+    CreditEventBroadcaster(CreditStreamProperties properties) {
+        this.properties = properties;
+    }
+    
+    public void publish(CreditEvent event) {
+        published.incrementAndGet();
+        deliver(allUsers, event);
+        List<Subscription> subscribers = byUser.get(event.getUserId());
+        if (subscribers != null) {
+            deliver(subscribers, event);
+        }
+    }
+    
+    /** Subscribes to the changes of a single user, or of every user when {@code userId} is null. */
+    public Subscription subscribe(Long userId, CreditEventSink sink) {
+        Subscription subscription = new Subscription(userId, sink, properties.getBufferSize(),
+                properties.getHeartbeat().toNanos());
+        // Start draining before the subscription becomes visible to publishers
+        subscription.start();
+        if (userId == null) {
+            allUsers.add(subscription);
+            if (!subscription.isOpen()) {
+                allUsers.remove(subscription);
+            }
+        } else {
+            // Added under the map's lock, so a concurrent removal of the last subscriber can't orphan the list
+            byUser.compute(userId, (id, subscribers) -> {
+                List<Subscription> list = subscribers == null ? new CopyOnWriteArrayList<>() : subscribers;
+                // Already cancelled by its drainer, whose removal ran first
+                if (subscription.isOpen()) {
+                    list.add(subscription);
+                }
+                return list.isEmpty() ? null : list;
+            });
+        }
+        return subscription;
+    }
+    
+    public int subscriberCount() {
+        return allUsers.size() + byUser.values().stream().mapToInt(List::size).sum();
+    }
+    
+    public long publishedCount() {
+        return published.get();
+    }
+    
+    public long droppedCount() {
+        return dropped.get();
+    }
+    
+    private void deliver(List<Subscription> subscribers, CreditEvent event) {
+        for (Subscription subscription : subscribers) {
+            if (!subscription.offer(event)) {
+                dropped.incrementAndGet();
+                log.warn("Dropping slow credit stream subscriber for user {}", subscription.userId);
+                subscription.cancel();
+            }
+        }
+    }
+    
+    private void remove(Subscription subscription) {
+        if (subscription.userId == null) {
+            allUsers.remove(subscription);
+            return;
+        }
+        byUser.computeIfPresent(subscription.userId, (id, subscribers) -> {
+            subscribers.remove(subscription);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+    
+    public final class Subscription {
+        
+        private final Long userId;
+        private final CreditEventSink sink;
+        private final int capacity;
+        private final long heartbeatNanos;
+        
+        private final Queue<CreditEvent> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean open = new AtomicBoolean(true);
+        private volatile Thread drainer;
+        
+        private Subscription(Long userId, CreditEventSink sink, int capacity, long heartbeatNanos) {
+            this.userId = userId;
+            this.sink = sink;
+            this.capacity = capacity;
+            this.heartbeatNanos = heartbeatNanos;
+        }
+        
+        private void start() {
+            drainer = Thread.ofVirtual().name("credit-stream-" + (userId == null ? "all" : userId)).start(this::drain);
+        }
+        
+        // Producer side: bounded, lock-free, returns false when the subscriber is too slow
+        private boolean offer(CreditEvent event) {
+            if (!open.get()) {
+                return true;
+            }
+            if (size.incrementAndGet() > capacity) {
+                size.decrementAndGet();
+                return false;
+            }
+            queue.offer(event);
+            LockSupport.unpark(drainer);
+            return true;
+        }
+        
+        public boolean isOpen() {
+            return open.get();
+        }
+        
+        /** Stops delivery and completes the sink; safe to call from any thread, more than once. */
+        public void cancel() {
+            if (open.compareAndSet(true, false)) {
+                remove(this);
+                LockSupport.unpark(drainer);
+            }
+        }
+        
+        private void drain() {
+            long lastWrite = System.nanoTime();
+            try {
+                while (open.get()) {
+                    CreditEvent event = queue.poll();
+                    if (event != null) {
+                        size.decrementAndGet();
+                        sink.send(event);
+                        lastWrite = System.nanoTime();
+                    } else if (System.nanoTime() - lastWrite >= heartbeatNanos) {
+                        sink.heartbeat();
+                        lastWrite = System.nanoTime();
+                    } else {
+                        LockSupport.parkNanos(this, heartbeatNanos);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                log.debug("Credit stream subscriber for user {} disconnected: {}", userId, e.getMessage());
+            } finally {
+                cancel();
+                queue.clear();
+                sink.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package co.psyke.test_coverage.stream;
+
+import java.io.IOException;
+
+/**
+ * Destination of a single subscription (an SSE connection in production).
+ * Both methods are only ever called from the subscription's own drain thread.
+ */
+public interface CreditEventSink {
+    
+    void send(CreditEvent event) throws IOException;
+    
+    void heartbeat() throws IOException;
+    
+    void close();
+}
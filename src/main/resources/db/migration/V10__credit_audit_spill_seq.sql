@@ -0,0 +1,4 @@
+-- Order in which events were spilled, which a user's events are queued again in
+ALTER TABLE credit_audit_spill ADD COLUMN seq BIGINT GENERATED BY DEFAULT AS IDENTITY;
+
+CREATE INDEX idx_credit_audit_spill_seq ON credit_audit_spill (seq);
@@ -0,0 +1,11 @@
+-- Same table Hibernate generates for User in the in-memory mode
+CREATE TABLE users (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    username VARCHAR(255) NOT NULL,
+    email VARCHAR(255) NOT NULL,
+    password VARCHAR(255) NOT NULL,
+    full_name VARCHAR(255),
+    active BOOLEAN DEFAULT TRUE,
+    credits DECIMAL(10,2) DEFAULT 1000 NOT NULL,
+    CONSTRAINT uk_users_username UNIQUE (username)
+);
@@ -0,0 +1,11 @@
+-- Open holds are summed into users.reserved, so checking the available balance never reads credit_holds
+ALTER TABLE users ADD COLUMN reserved DECIMAL(10,2) DEFAULT 0 NOT NULL;
+
+CREATE TABLE credit_holds (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    amount DECIMAL(10,2) NOT NULL,
+    expires_at TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+CREATE INDEX idx_credit_holds_user_id ON credit_holds (user_id);
@@ -0,0 +1,25 @@
+-- Bulk credit jobs; chunks are marked done in the transaction that updates their users
+CREATE TABLE credit_jobs (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    operation VARCHAR(16) NOT NULL,
+    amount DECIMAL(10,2) NOT NULL,
+    active_only BOOLEAN NOT NULL,
+    status VARCHAR(16) NOT NULL,
+    total_chunks INTEGER NOT NULL,
+    created_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    finished_at TIMESTAMP(6) WITH TIME ZONE,
+    error VARCHAR(255)
+);
+
+CREATE TABLE credit_job_chunks (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    job_id BIGINT NOT NULL,
+    start_id BIGINT NOT NULL,
+    end_id BIGINT NOT NULL,
+    done BOOLEAN NOT NULL,
+    updated_users INTEGER,
+    duration_millis BIGINT,
+    completed_at TIMESTAMP(6) WITH TIME ZONE
+);
+
+CREATE INDEX idx_credit_job_chunks_job_id ON credit_job_chunks (job_id);
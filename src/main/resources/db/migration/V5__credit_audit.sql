@@ -0,0 +1,11 @@
+-- Appended in batches by the credit audit pipeline, off the request path
+CREATE TABLE credit_audit (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    type VARCHAR(16) NOT NULL,
+    amount DECIMAL(10,2) NOT NULL,
+    credits DECIMAL(10,2) NOT NULL,
+    occurred_at TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+CREATE INDEX idx_credit_audit_user_id ON credit_audit (user_id);
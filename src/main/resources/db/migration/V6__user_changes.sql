@@ -0,0 +1,10 @@
+-- Change log written in the transaction of every user write, tailed by the other instances to drop stale cache entries
+CREATE TABLE user_changes (
+    seq BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    kind VARCHAR(16) NOT NULL,
+    node VARCHAR(64) NOT NULL,
+    changed_at TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+CREATE INDEX idx_user_changes_changed_at ON user_changes (changed_at);
@@ -0,0 +1,4 @@
+-- Rows are matched by event id, so a batch retried after a partial failure doesn't duplicate what was written
+ALTER TABLE credit_audit ADD COLUMN event_id UUID;
+
+ALTER TABLE credit_audit ADD CONSTRAINT uk_credit_audit_event_id UNIQUE (event_id);
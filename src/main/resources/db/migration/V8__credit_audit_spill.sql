@@ -0,0 +1,11 @@
+-- Audit events the pipeline had no room for, kept until they can be queued again
+CREATE TABLE credit_audit_spill (
+    event_id UUID PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    type VARCHAR(16) NOT NULL,
+    amount DECIMAL(10,2) NOT NULL,
+    credits DECIMAL(10,2) NOT NULL,
+    occurred_at TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+CREATE INDEX idx_credit_audit_spill_occurred_at ON credit_audit_spill (occurred_at);
@@ -0,0 +1,2 @@
+-- Raised by every write to a user; caches updated after commit compare it to keep the newest state
+ALTER TABLE users ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
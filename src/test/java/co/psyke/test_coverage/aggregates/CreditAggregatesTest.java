@@ -0,0 +1,125 @@
+package co.psyke.test_coverage.aggregates;
+
+import co.psyke.test_coverage.config.CreditAggregateProperties;
+import co.psyke.test_coverage.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CreditAggregatesTest {
+    
+    private CreditAggregates aggregates;
+    
+    @BeforeEach
+    void setUp() {
+        CreditAggregateProperties properties = new CreditAggregateProperties();
+        properties.setBucketBounds(List.of(1000.0, 100.0));
+        aggregates = new CreditAggregates(properties);
+    }
+    
+    @Test
+    void testSummary_AppliesOnlyTheDifferenceOfEachWrite() {
+        aggregates.updated(user(1L, 1500.00, true));
+        aggregates.updated(user(2L, 800.50, false));
+        aggregates.updated(user(1L, 1400.00, true));
+        
+        CreditAggregates.Summary summary = aggregates.summary();
+        assertEquals(2200.50, summary.totalCredits());
+        assertEquals(2, summary.users());
+        assertEquals(1, summary.activeUsers());
+        
+        aggregates.removed(1L);
+        aggregates.removed(1L);
+        
+        summary = aggregates.summary();
+        assertEquals(800.50, summary.totalCredits());
+        assertEquals(1, summary.users());
+        assertEquals(0, summary.activeUsers());
+    }
+    
+    @Test
+    void testUpdated_LateStaleStatesAreIgnored() {
+        User spent = user(1L, 500.00, true);
+        spent.setVersion(2L);
+        aggregates.updated(spent);
+        aggregates.updated(user(3L, 300.00, true));
+        aggregates.removed(3L);
+        
+        // Delivered after the writes above, or read by the loader before them
+        aggregates.updated(user(1L, 1000.00, true));
+        aggregates.updated(user(2L, 200.00, true));
+        aggregates.updated(user(3L, 300.00, true));
+        
+        CreditAggregates.Summary summary = aggregates.summary();
+        assertEquals(700.00, summary.totalCredits());
+        assertEquals(2, summary.users());
+        assertEquals(List.of(1L, 2L), ids(aggregates.top(10)));
+    }
+    
+    @Test
+    void testDistribution_BoundStartsItsBucket() {
+        aggregates.updated(user(1L, 99.99, true));
+        aggregates.updated(user(2L, 100.00, true));
+        aggregates.updated(user(3L, 1000.00, true));
+        aggregates.updated(user(4L, 25000.00, true));
+        
+        List<CreditAggregates.Bucket> distribution = aggregates.distribution();
+        
+        assertEquals(List.of(
+                new CreditAggregates.Bucket(0.0, 100.0, 1),
+                new CreditAggregates.Bucket(100.0, 1000.0, 1),
+                new CreditAggregates.Bucket(1000.0, null, 2)), distribution);
+        
+        aggregates.updated(user(4L, 500.00, true));
+        assertEquals(2, aggregates.distribution().get(1).users());
+    }
+    
+    @Test
+    void testTop_FollowsCreditChanges() {
+        aggregates.updated(user(1L, 1500.00, true));
+        aggregates.updated(user(2L, 2000.00, true));
+        aggregates.updated(user(3L, 800.00, true));
+        aggregates.updated(user(4L, 2000.00, true));
+        
+        assertEquals(List.of(2L, 4L), ids(aggregates.top(2)));
+        
+        aggregates.updated(user(3L, 5000.00, true));
+        aggregates.removed(2L);
+        
+        assertEquals(List.of(3L, 4L, 1L), ids(aggregates.top(10)));
+        assertEquals(5000.00, aggregates.top(1).getFirst().credits());
+    }
+    
+    @Test
+    void testConcurrentWritesKeepTotalsExact() throws Exception {
+        int users = 100;
+        int writes = 1000;
+        try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            for (long id = 0; id < users; id++) {
+                long userId = id;
+                executor.execute(() -> {
+                    for (int i = 1; i <= writes; i++) {
+                        aggregates.updated(user(userId, i / 100.0, true));
+                    }
+                });
+            }
+        }
+        
+        assertEquals(users * writes / 100.0, aggregates.summary().totalCredits());
+        assertEquals(users, aggregates.top(users + 1).size());
+        assertEquals(users, aggregates.distribution().stream().mapToLong(CreditAggregates.Bucket::users).sum());
+    }
+    
+    private static List<Long> ids(List<CreditAggregates.Ranked> ranked) {
+        return ranked.stream().map(CreditAggregates.Ranked::userId).toList();
+    }
+    
+    private static User user(Long id, double credits, boolean active) {
+        return User.builder().id(id).username("user_" + id).credits(credits).active(active).build();
+    }
+}
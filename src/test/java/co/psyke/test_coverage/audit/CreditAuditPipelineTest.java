@@ -0,0 +1,323 @@
+package co.psyke.test_coverage.audit;
+
+import co.psyke.test_coverage.config.CreditAuditProperties;
+import co.psyke.test_coverage.stream.CreditEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CreditAuditPipelineTest {
+    
+    @Test
+    void testEventsOfEachUserArriveInPublicationOrder() throws Exception {
+        Recorder recorder = new Recorder();
+        CreditAuditPipeline pipeline = new CreditAuditPipeline(properties(4, 64), List.of(recorder));
+        pipeline.start();
+        
+        // Eight producers sharing four stripes, each publishing for its own users
+        try (ExecutorService producers = Executors.newFixedThreadPool(8)) {
+            for (int producer = 0; producer < 8; producer++) {
+                long firstUser = producer * 10L;
+                producers.execute(() -> {
+                    for (int sequence = 1; sequence <= 500; sequence++) {
+                        for (long user = firstUser; user < firstUser + 10; user++) {
+                            pipeline.publish(event(user, sequence));
+                        }
+                    }
+                });
+            }
+        }
+        pipeline.close();
+        
+        assertEquals(80, recorder.byUser.size());
+        recorder.byUser.forEach((user, amounts) -> {
+            assertEquals(500, amounts.size(), "events of user " + user);
+            for (int i = 0; i < amounts.size(); i++) {
+                assertEquals(i + 1, amounts.get(i));
+            }
+        });
+        assertEquals(40_000, pipeline.getPublished());
+        assertEquals(40_000, pipeline.getDelivered());
+        assertEquals(0, pipeline.getDropped());
+    }
+    
+    @Test
+    void testFullRingDropsAfterOfferTimeout() {
+        Recorder recorder = new Recorder();
+        CreditAuditProperties properties = properties(1, 2);
+        properties.setOfferTimeout(Duration.ofMillis(50));
+        CreditAuditPipeline pipeline = new CreditAuditPipeline(properties, List.of(recorder));
+        
+        // Not started, so nothing drains the ring
+        assertTrue(pipeline.publish(event(1, 1)));
+        assertTrue(pipeline.publish(event(1, 2)));
+        long started = System.nanoTime();
+        assertFalse(pipeline.publish(event(1, 3)));
+        
+        assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(1, pipeline.getDropped());
+        assertEquals(2, pipeline.getQueued());
+        
+        pipeline.start();
+        pipeline.close();
+        assertEquals(List.of(1.0, 2.0), recorder.byUser.get(1L));
+    }
+    
+    @Test
+    void testFullRingSpillsAndQueuesAgainLater() {
+        Recorder recorder = new Recorder();
+        MemorySpill spill = new MemorySpill();
+        CreditAuditProperties properties = properties(1, 2);
+        properties.setOfferTimeout(Duration.ofMillis(10));
+        properties.getSpill().setInterval(Duration.ofMillis(10));
+        CreditAuditPipeline pipeline = new CreditAuditPipeline(properties, List.of(recorder), List.of(spill));
+        
+        assertTrue(pipeline.publish(event(1, 1)));
+        assertTrue(pipeline.publish(event(1, 2)));
+        assertTrue(pipeline.publish(event(1, 3)));
+        
+        assertEquals(1, pipeline.getSpilled());
+        assertEquals(0, pipeline.getDropped());
+        assertEquals(1, spill.events.size());
+        
+        pipeline.start();
+        awaitDelivered(pipeline, 3);
+        pipeline.close();
+        assertEquals(List.of(1.0, 2.0, 3.0), recorder.byUser.get(1L));
+        assertTrue(spill.events.isEmpty());
+    }
+    
+    @Test
+    void testEventsBehindSpilledOnesAreSpilledToo() throws Exception {
+        Recorder recorder = new Recorder();
+        MemorySpill spill = new MemorySpill();
+        CreditAuditProperties properties = properties(1, 2);
+        properties.setOfferTimeout(Duration.ofMillis(10));
+        // Queued again by hand only
+        properties.getSpill().setInterval(Duration.ofHours(1));
+        CreditAuditPipeline pipeline = new CreditAuditPipeline(properties, List.of(recorder), List.of(spill));
+        
+        pipeline.publish(event(1, 1));
+        pipeline.publish(event(1, 2));
+        pipeline.publish(event(1, 3));
+        pipeline.start();
+        awaitDelivered(pipeline, 2);
+        
+        // The ring has room again, but 3 is still in the spill
+        assertTrue(pipeline.publish(event(1, 4)));
+        assertEquals(2, pipeline.getSpilled());
+        
+        assertEquals(2, pipeline.respill());
+        awaitDelivered(pipeline, 4);
+        assertTrue(pipeline.publish(event(1, 5)));
+        assertEquals(2, pipeline.getSpilled());
+        awaitDelivered(pipeline, 5);
+        pipeline.close();
+        assertEquals(List.of(1.0, 2.0, 3.0, 4.0, 5.0), recorder.byUser.get(1L));
+    }
+    
+    @Test
+    void testEventsSpilledByAnEarlierRunStayAhead() throws Exception {
+        Recorder recorder = new Recorder();
+        MemorySpill spill = new MemorySpill();
+        spill.spill(event(2, 1));
+        CreditAuditProperties properties = properties(2, 16);
+        properties.getSpill().setInterval(Duration.ofHours(1));
+        CreditAuditPipeline pipeline = new CreditAuditPipeline(properties, List.of(recorder), List.of(spill));
+        pipeline.start();
+        
+        // User 4 shares the stripe of user 2, user 1 has its own
+        assertTrue(pipeline.publish(event(4, 2)));
+        assertTrue(pipeline.publish(event(1, 1)));
+        assertEquals(1, pipeline.getSpilled());
+        awaitDelivered(pipeline, 1);
+        
+        assertEquals(2, pipeline.respill());
+        awaitDelivered(pipeline, 3);
+        pipeline.close();
+        assertEquals(List.of(1.0), recorder.byUser.get(2L));
+        assertEquals(List.of(2.0), recorder.byUser.get(4L));
+        assertEquals(List.of(1.0), recorder.byUser.get(1L));
+    }
+    
+    @Test
+    void testEventIsLostOnlyWhenSpillFails() {
+        CreditAuditSpill broken = new MemorySpill() {
+            @Override
+            public void spill(CreditEvent event) {
+                throw new IllegalStateException("database unavailable");
+            }
+        };
+        CreditAuditProperties properties = properties(1, 1);
+        properties.setOfferTimeout(Duration.ofMillis(10));
+        CreditAuditPipeline pipeline = new CreditAuditPipeline(properties, List.of(new Recorder()), List.of(broken));
+        
+        assertTrue(pipeline.publish(event(1, 1)));
+        assertFalse(pipeline.publish(event(1, 2)));
+        
+        assertEquals(0, pipeline.getSpilled());
+        assertEquals(1, pipeline.getDropped());
+        pipeline.close();
+    }
+    
+    @Test
+    void testBlockedPublisherResumesWhenRoomFrees() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Recorder recorder = new Recorder();
+        CreditAuditConsumer blocking = (stripe, batch) -> release.await();
+        CreditAuditProperties properties = properties(1, 2);
+        properties.setBatchSize(1);
+        CreditAuditPipeline pipeline = new CreditAuditPipeline(properties, List.of(blocking, recorder));
+        pipeline.start();
+        
+        pipeline.publish(event(1, 1));
+        pipeline.publish(event(1, 2));
+        Thread.ofPlatform().start(() -> {
+            sleep(100);
+            release.countDown();
+        });
+        // Waits for the consumer instead of failing at once
+        assertTrue(pipeline.publish(event(1, 3)));
+        
+        pipeline.close();
+        assertEquals(List.of(1.0, 2.0, 3.0), recorder.byUser.get(1L));
+        assertEquals(0, pipeline.getDropped());
+    }
+    
+    @Test
+    void testFailingConsumerIsRetriedWithoutRepeatingTheOthers() {
+        AtomicInteger attempts = new AtomicInteger();
+        Recorder flaky = new Recorder() {
+            @Override
+            public void consume(int stripe, List<CreditEvent> batch) {
+                if (attempts.incrementAndGet() <= 2) {
+                    throw new IllegalStateException("database unavailable");
+                }
+                super.consume(stripe, batch);
+            }
+        };
+        Recorder healthy = new Recorder();
+        CreditAuditProperties properties = properties(1, 16);
+        properties.setRetryBackoff(Duration.ofMillis(1));
+        CreditAuditPipeline pipeline = new CreditAuditPipeline(properties, List.of(healthy, flaky));
+        
+        for (int sequence = 1; sequence <= 3; sequence++) {
+            pipeline.publish(event(7, sequence));
+        }
+        pipeline.start();
+        awaitDelivered(pipeline, 3);
+        pipeline.close();
+        
+        assertEquals(List.of(1.0, 2.0, 3.0), flaky.byUser.get(7L));
+        assertEquals(List.of(1.0, 2.0, 3.0), healthy.byUser.get(7L));
+        assertEquals(2, pipeline.getFailures());
+    }
+    
+    @Test
+    void testDisabledPipelineDropsEverything() {
+        Recorder recorder = new Recorder();
+        CreditAuditProperties properties = properties(1, 16);
+        properties.setEnabled(false);
+        CreditAuditPipeline pipeline = new CreditAuditPipeline(properties, List.of(recorder));
+        pipeline.start();
+        
+        assertFalse(pipeline.publish(event(1, 1)));
+        
+        pipeline.close();
+        assertTrue(recorder.byUser.isEmpty());
+        assertEquals(0, pipeline.getPublished());
+    }
+    
+    @Test
+    void testRingCapacityIsRoundedUpToPowerOfTwo() {
+        assertEquals(1, new AuditRing(1).capacity());
+        assertEquals(8, new AuditRing(5).capacity());
+        assertEquals(4096, new AuditRing(4096).capacity());
+    }
+    
+    private static CreditAuditProperties properties(int stripes, int bufferSize) {
+        CreditAuditProperties properties = new CreditAuditProperties();
+        properties.setStripes(stripes);
+        properties.setBufferSize(bufferSize);
+        properties.setBatchSize(16);
+        return properties;
+    }
+    
+    private static CreditEvent event(long userId, int sequence) {
+        return new CreditEvent(UUID.randomUUID(), userId, CreditEvent.Type.ADD, (double) sequence, 1000.0 + sequence,
+                Instant.now());
+    }
+    
+    private static void awaitDelivered(CreditAuditPipeline pipeline, long events) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (pipeline.getDelivered() < events && System.nanoTime() < deadline) {
+            sleep(10);
+        }
+    }
+    
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static class MemorySpill implements CreditAuditSpill {
+        
+        final List<CreditEvent> events = Collections.synchronizedList(new ArrayList<>());
+        
+        @Override
+        public void spill(CreditEvent event) {
+            events.add(event);
+        }
+        
+        @Override
+        public List<CreditEvent> pending(int limit) {
+            synchronized (events) {
+                return List.copyOf(events.subList(0, Math.min(limit, events.size())));
+            }
+        }
+        
+        @Override
+        public long[] pendingByStripe(int stripes) {
+            long[] counts = new long[stripes];
+            synchronized (events) {
+                events.forEach(event -> counts[(int) Math.floorMod(event.getUserId(), (long) stripes)]++);
+            }
+            return counts;
+        }
+        
+        @Override
+        public void remove(List<CreditEvent> removed) {
+            events.removeAll(removed);
+        }
+    }
+    
+    private static class Recorder implements CreditAuditConsumer {
+        
+        final Map<Long, List<Double>> byUser = new ConcurrentHashMap<>();
+        
+        @Override
+        public void consume(int stripe, List<CreditEvent> batch) {
+            for (CreditEvent event : batch) {
+                byUser.computeIfAbsent(event.getUserId(), user -> Collections.synchronizedList(new ArrayList<>()))
+                        .add(event.getAmount());
+            }
+        }
+    }
+}
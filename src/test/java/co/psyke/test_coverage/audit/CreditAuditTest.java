@@ -0,0 +1,115 @@
+package co.psyke.test_coverage.audit;
+
+import co.psyke.test_coverage.model.CreditAuditEntry;
+import co.psyke.test_coverage.model.User;
+import co.psyke.test_coverage.repository.CreditAuditRepository;
+import co.psyke.test_coverage.service.UserService;
+import co.psyke.test_coverage.stream.CreditEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:audit",
+    "app.audit.batch-size=8"
+})
+class CreditAuditTest {
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private CreditAuditPipeline creditAuditPipeline;
+    
+    @Autowired
+    private CreditAuditRepository creditAuditRepository;
+    
+    @Autowired
+    private JdbcCreditAuditConsumer jdbcCreditAuditConsumer;
+    
+    @Autowired
+    private JdbcCreditAuditSpill jdbcCreditAuditSpill;
+    
+    @Test
+    void testCreditChangesAreAuditedInOrder() throws Exception {
+        User user = userService.createUser(User.builder()
+            .username("audited")
+            .email("audited@example.com")
+            .password("password123")
+            .active(true)
+            .credits(1000.00)
+            .build());
+        
+        for (int i = 1; i <= 20; i++) {
+            userService.addCredits(user.getId(), (double) i);
+            userService.spendCredits(user.getId(), 1.00);
+        }
+        
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        List<CreditAuditEntry> entries = creditAuditRepository.findByUserIdOrderById(user.getId());
+        while (entries.size() < 40 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+            entries = creditAuditRepository.findByUserIdOrderById(user.getId());
+        }
+        
+        assertEquals(40, entries.size());
+        double credits = 1000.00;
+        for (int i = 0; i < entries.size(); i++) {
+            CreditAuditEntry entry = entries.get(i);
+            boolean add = i % 2 == 0;
+            double amount = add ? i / 2 + 1 : 1.00;
+            credits += add ? amount : -amount;
+            assertEquals(add ? CreditEvent.Type.ADD : CreditEvent.Type.SPEND, entry.getType());
+            assertEquals(amount, entry.getAmount());
+            assertEquals(credits, entry.getCredits());
+        }
+        assertEquals(0, creditAuditPipeline.getDropped());
+    }
+    
+    @Test
+    void testRetriedBatchIsNotWrittenTwice() {
+        List<CreditEvent> batch = List.of(
+            new CreditEvent(UUID.randomUUID(), 9001L, CreditEvent.Type.ADD, 10.00, 1010.00, Instant.now()),
+            new CreditEvent(UUID.randomUUID(), 9001L, CreditEvent.Type.SPEND, 5.00, 1005.00, Instant.now()));
+        
+        jdbcCreditAuditConsumer.consume(0, batch);
+        // As after a failure on another shard
+        jdbcCreditAuditConsumer.consume(0, batch);
+        
+        List<CreditAuditEntry> entries = creditAuditRepository.findByUserIdOrderById(9001L);
+        assertEquals(2, entries.size());
+        assertEquals(batch.get(0).getId(), entries.get(0).getEventId());
+        assertEquals(batch.get(1).getId(), entries.get(1).getEventId());
+    }
+    
+    @Test
+    void testSpilledEventsAreKeptUntilRemoved() {
+        Instant now = Instant.now();
+        CreditEvent later = new CreditEvent(UUID.randomUUID(), 9002L, CreditEvent.Type.SPEND, 5.00, 995.00, now);
+        CreditEvent earlier = new CreditEvent(UUID.randomUUID(), 9002L, CreditEvent.Type.ADD, 10.00, 1010.00,
+            now.minusSeconds(1));
+        
+        jdbcCreditAuditSpill.spill(later);
+        jdbcCreditAuditSpill.spill(earlier);
+        jdbcCreditAuditSpill.spill(later);
+        
+        // A user's events come back in the order they were spilled, whatever their timestamps
+        assertEquals(List.of(later.getId(), earlier.getId()), pendingIds());
+        assertArrayEquals(new long[] {0, 0, 2}, jdbcCreditAuditSpill.pendingByStripe(3));
+        
+        jdbcCreditAuditSpill.remove(List.of(earlier));
+        assertEquals(List.of(later.getId()), pendingIds());
+        jdbcCreditAuditSpill.remove(List.of(later));
+    }
+    
+    private List<UUID> pendingIds() {
+        return jdbcCreditAuditSpill.pending(10).stream().map(CreditEvent::getId).toList();
+    }
+}
@@ -0,0 +1,108 @@
+package co.psyke.test_coverage.audit;
+
+import co.psyke.test_coverage.stream.CreditEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentCreditAuditConsumerTest {
+    
+    private static final Instant AT = Instant.parse("2026-01-01T10:00:00Z");
+    private static final String ID = "00000000-0000-0000-0000-00000000000";
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    void testAppendsLinesPerStripe() throws Exception {
+        SegmentCreditAuditConsumer consumer = new SegmentCreditAuditConsumer(directory, 4096);
+        
+        consumer.consume(0, List.of(event(1, CreditEvent.Type.SPEND, 25.5, 974.5)));
+        consumer.consume(1, List.of(event(2, CreditEvent.Type.ADD, 100, 1100)));
+        consumer.consume(0, List.of(event(3, CreditEvent.Type.ADD, 10, 1010)));
+        consumer.close();
+        
+        assertEquals(List.of(
+                ID + "1,2026-01-01T10:00:00Z,1,SPEND,25.50,974.50",
+                ID + "3,2026-01-01T10:00:00Z,3,ADD,10.00,1010.00"), lines(consumer.segmentPath(0, 0)));
+        assertEquals(List.of(ID + "2,2026-01-01T10:00:00Z,2,ADD,100.00,1100.00"), lines(consumer.segmentPath(1, 0)));
+    }
+    
+    @Test
+    void testRollsToNextSegmentWhenFull() throws Exception {
+        // Room for two of these lines per segment
+        SegmentCreditAuditConsumer consumer = new SegmentCreditAuditConsumer(directory, 160);
+        List<CreditEvent> batch = new ArrayList<>();
+        for (int user = 1; user <= 5; user++) {
+            batch.add(event(user, CreditEvent.Type.ADD, 1, 1001));
+        }
+        
+        consumer.consume(0, batch);
+        consumer.close();
+        
+        assertEquals(2, lines(consumer.segmentPath(0, 0)).size());
+        assertEquals(2, lines(consumer.segmentPath(0, 1)).size());
+        assertEquals(List.of(ID + "5,2026-01-01T10:00:00Z,5,ADD,1.00,1001.00"), lines(consumer.segmentPath(0, 2)));
+    }
+    
+    @Test
+    void testRestartContinuesWithNewSegment() throws Exception {
+        SegmentCreditAuditConsumer first = new SegmentCreditAuditConsumer(directory, 4096);
+        first.consume(0, List.of(event(1, CreditEvent.Type.ADD, 1, 1001)));
+        first.close();
+        
+        SegmentCreditAuditConsumer second = new SegmentCreditAuditConsumer(directory, 4096);
+        second.consume(0, List.of(event(1, CreditEvent.Type.SPEND, 1, 1000)));
+        second.close();
+        
+        assertEquals(1, lines(second.segmentPath(0, 0)).size());
+        assertEquals(List.of(ID + "1,2026-01-01T10:00:00Z,1,SPEND,1.00,1000.00"), lines(second.segmentPath(0, 1)));
+    }
+    
+    @Test
+    void testRetriedBatchRepeatsLinesWithTheirIds() throws Exception {
+        SegmentCreditAuditConsumer consumer = new SegmentCreditAuditConsumer(directory, 160);
+        List<CreditEvent> batch = new ArrayList<>();
+        for (int user = 1; user <= 3; user++) {
+            batch.add(event(user, CreditEvent.Type.ADD, 1, 1001));
+        }
+        // The roll to the second segment fails after two lines were copied
+        consumer.consume(0, List.of());
+        Files.createFile(consumer.segmentPath(0, 1));
+        assertThrows(IOException.class, () -> consumer.consume(0, batch));
+        Files.delete(consumer.segmentPath(0, 1));
+        
+        consumer.consume(0, batch);
+        consumer.close();
+        
+        List<String> written = new ArrayList<>();
+        for (int index = 0; index <= 2; index++) {
+            written.addAll(lines(consumer.segmentPath(0, index)));
+        }
+        assertEquals(5, written.size());
+        assertEquals(3, written.stream().map(line -> line.substring(0, line.indexOf(','))).distinct().count());
+    }
+    
+    // Ids end in the user id, so the lines can be spelled out
+    private static CreditEvent event(long userId, CreditEvent.Type type, double amount, double credits) {
+        return new CreditEvent(new UUID(0, userId), userId, type, amount, credits, AT);
+    }
+    
+    // The segment is preallocated, its content ends at the first NUL
+    private static List<String> lines(Path segment) throws Exception {
+        String content = new String(Files.readAllBytes(segment), StandardCharsets.UTF_8);
+        int end = content.indexOf('\0');
+        return Arrays.asList((end < 0 ? content : content.substring(0, end)).split("\n"));
+    }
+}
@@ -0,0 +1,127 @@
+package co.psyke.test_coverage.cache;
+
+import co.psyke.test_coverage.TestCoverageApplication;
+import co.psyke.test_coverage.aggregates.CreditAggregates;
+import co.psyke.test_coverage.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserChangePollerTest {
+    
+    private static final long GAP_TIMEOUT = TimeUnit.SECONDS.toNanos(5);
+    
+    @TempDir
+    private Path directory;
+    
+    @Test
+    void testCursorWaitsForGap() {
+        UserChangePoller.Cursor cursor = new UserChangePoller.Cursor(10);
+        
+        // 11 is still in flight
+        assertTrue(cursor.accept(12, 0));
+        cursor.advance(0, GAP_TIMEOUT);
+        assertEquals(10, cursor.position());
+        
+        // Read again from 10: 12 was already applied, 11 is new
+        assertTrue(cursor.accept(11, 1));
+        assertFalse(cursor.accept(12, 1));
+        cursor.advance(1, GAP_TIMEOUT);
+        assertEquals(12, cursor.position());
+    }
+    
+    @Test
+    void testCursorStartsWithUncommittedNumbersAsGaps() {
+        // 5 and 9 were taken by transactions still running when the cursor was made
+        UserChangePoller.Cursor cursor = UserChangePoller.Cursor.startingAt(10, List.of(1L, 2L, 3L, 4L, 6L, 7L, 8L, 10L), 0);
+        assertEquals(4, cursor.position());
+        
+        assertFalse(cursor.accept(6, 1));
+        assertTrue(cursor.accept(9, 1));
+        cursor.advance(1, GAP_TIMEOUT);
+        assertEquals(4, cursor.position());
+        
+        cursor.advance(GAP_TIMEOUT, GAP_TIMEOUT);
+        assertEquals(10, cursor.position());
+    }
+    
+    @Test
+    void testCursorWritesOffExpiredGap() {
+        UserChangePoller.Cursor cursor = new UserChangePoller.Cursor(0);
+        
+        assertTrue(cursor.accept(3, 0));
+        cursor.advance(GAP_TIMEOUT - 1, GAP_TIMEOUT);
+        assertEquals(0, cursor.position());
+        
+        // 1 and 2 were rolled back
+        cursor.advance(GAP_TIMEOUT, GAP_TIMEOUT);
+        assertEquals(3, cursor.position());
+        assertFalse(cursor.accept(1, GAP_TIMEOUT));
+    }
+    
+    @Test
+    void testCursorSkipsIdentityRestart() {
+        UserChangePoller.Cursor cursor = new UserChangePoller.Cursor(0);
+        
+        assertTrue(cursor.accept(1_000_000, 0));
+        cursor.advance(0, GAP_TIMEOUT);
+        assertEquals(1_000_000, cursor.position());
+    }
+    
+    @Test
+    void testInstancesFollowEachOthersWrites() {
+        try (ConfigurableApplicationContext a = start("node-a");
+             ConfigurableApplicationContext b = start("node-b")) {
+            UserService serviceA = a.getBean(UserService.class);
+            UserService serviceB = b.getBean(UserService.class);
+            UserETagCache etagsA = a.getBean(UserETagCache.class);
+            UserETagCache etagsB = b.getBean(UserETagCache.class);
+            CreditAggregates aggregatesA = a.getBean(CreditAggregates.class);
+            UserChangePoller pollerA = a.getBean(UserChangePoller.class);
+            UserChangePoller pollerB = b.getBean(UserChangePoller.class);
+            
+            Long id = serviceA.getUserByUsername("anna_verdi").orElseThrow().getId();
+            // Tagged as the controller does after a read
+            etagsA.put(serviceA.getUserById(id).orElseThrow());
+            assertEquals(800.00, serviceA.getCredits(id));
+            assertNotNull(etagsA.get(id));
+            double total = aggregatesA.summary().totalCredits();
+            long users = aggregatesA.summary().users();
+            
+            serviceB.spendCredits(id, 300.00);
+            
+            assertEquals(1, pollerA.poll());
+            assertNull(etagsA.get(id));
+            assertEquals(total - 300.00, aggregatesA.summary().totalCredits(), 0.001);
+            assertEquals(500.00, serviceA.getCredits(id));
+            
+            // Its own change was applied when it was made
+            assertEquals(0, pollerB.poll());
+            assertNotNull(etagsB.get(id));
+            
+            assertTrue(serviceB.deleteUser(id));
+            assertEquals(1, pollerA.poll());
+            assertEquals(users - 1, aggregatesA.summary().users());
+            assertTrue(aggregatesA.top(20).stream().noneMatch(ranked -> ranked.userId() == id));
+        }
+    }
+    
+    // Polled by hand so the assertions don't race the scheduler
+    private ConfigurableApplicationContext start(String node) {
+        return new SpringApplicationBuilder(TestCoverageApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("durable")
+                .run("--app.durable.directory=" + directory,
+                        "--spring.datasource.url=jdbc:h2:file:" + directory + "/users;AUTO_SERVER=TRUE",
+                        "--app.changes.node-id=" + node,
+                        "--app.changes.poll-interval=1h");
+    }
+}
@@ -0,0 +1,59 @@
+package co.psyke.test_coverage.cache;
+
+import co.psyke.test_coverage.model.User;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserETagCacheTest {
+    
+    private final UserETagCache cache = new UserETagCache();
+    
+    @Test
+    void testLatePutOfOlderVersionIsIgnored() {
+        User newer = user(2, 900.00);
+        String newerTag = cache.put(newer);
+        
+        // A writer that committed first but stores its tag last
+        String olderTag = cache.put(user(1, 1000.00));
+        
+        assertNotEquals(newerTag, olderTag);
+        assertEquals(newerTag, cache.get(1L));
+    }
+    
+    @Test
+    void testEvictKeepsOlderReadsOut() {
+        cache.put(user(1, 1000.00));
+        cache.evict(1L, 2L);
+        assertNull(cache.get(1L));
+        
+        // A read of the row from before the write
+        cache.put(user(1, 1000.00));
+        assertNull(cache.get(1L));
+        
+        // A read of the written row
+        String tag = cache.put(user(2, 900.00));
+        assertEquals(tag, cache.get(1L));
+    }
+    
+    @Test
+    void testDeletedUserIsNotTaggedAgain() {
+        cache.put(user(3, 1000.00));
+        cache.deleted(1L);
+        
+        cache.put(user(3, 1000.00));
+        
+        assertNull(cache.get(1L));
+    }
+    
+    private static User user(long version, double credits) {
+        return User.builder()
+            .id(1L)
+            .username("mario_rossi")
+            .email("mario.rossi@example.com")
+            .active(true)
+            .credits(credits)
+            .version(version)
+            .build();
+    }
+}
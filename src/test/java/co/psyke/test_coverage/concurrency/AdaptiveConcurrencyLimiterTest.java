@@ -0,0 +1,123 @@
+package co.psyke.test_coverage.concurrency;
+
+import co.psyke.test_coverage.config.ConcurrencyLimitProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+    
+    private static final long MILLI = Duration.ofMillis(1).toNanos();
+    private static final long WINDOW = 100 * MILLI;
+    
+    @Test
+    void testBulkIsShedBeforeCriticalRequests() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(properties(10));
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        
+        for (int i = 0; i < 5; i++) {
+            permits.add(limiter.tryAcquire(Priority.BULK));
+        }
+        assertNull(limiter.tryAcquire(Priority.BULK));
+        
+        for (int i = 0; i < 4; i++) {
+            permits.add(limiter.tryAcquire(Priority.NORMAL));
+        }
+        assertNull(limiter.tryAcquire(Priority.NORMAL));
+        
+        permits.add(limiter.tryAcquire(Priority.CRITICAL));
+        assertNull(limiter.tryAcquire(Priority.CRITICAL));
+        assertFalse(permits.contains(null));
+        
+        assertEquals(10, limiter.getInflight());
+        assertEquals(1, limiter.getRejected(Priority.BULK));
+        assertEquals(1, limiter.getRejected(Priority.NORMAL));
+        assertEquals(1, limiter.getRejected(Priority.CRITICAL));
+        
+        permits.forEach(permit -> permit.release(false));
+        assertEquals(0, limiter.getInflight());
+        assertNotNull(limiter.tryAcquire(Priority.BULK));
+    }
+    
+    @Test
+    void testReleaseIsIdempotent() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(properties(10));
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire(Priority.NORMAL);
+        
+        permit.release(false);
+        permit.release(false);
+        
+        assertEquals(0, limiter.getInflight());
+    }
+    
+    @Test
+    void testLimitShrinksWhenLatencyRises() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(properties(100));
+        long now = System.nanoTime();
+        
+        now = windows(limiter, now, 5, 2 * MILLI, 100);
+        int before = limiter.getLimit();
+        windows(limiter, now, 5, 20 * MILLI, 100);
+        
+        assertTrue(limiter.getLimit() < before, limiter.getLimit() + " should be below " + before);
+    }
+    
+    @Test
+    void testLimitGrowsWhileLatencyIsStableAndLimitIsUsed() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(properties(20));
+        
+        windows(limiter, System.nanoTime(), 10, 2 * MILLI, 20);
+        
+        assertTrue(limiter.getLimit() > 20, "limit was " + limiter.getLimit());
+    }
+    
+    @Test
+    void testLimitDoesNotGrowWhenMostlyIdle() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(properties(20));
+        
+        windows(limiter, System.nanoTime(), 10, 2 * MILLI, 1);
+        
+        assertEquals(20, limiter.getLimit());
+    }
+    
+    @Test
+    void testDisabledLimiterAdmitsEverything() {
+        ConcurrencyLimitProperties properties = properties(1);
+        properties.setEnabled(false);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(properties);
+        
+        assertNotNull(limiter.tryAcquire(Priority.BULK));
+        assertNotNull(limiter.tryAcquire(Priority.BULK));
+        assertEquals(0, limiter.getInflight());
+    }
+    
+    // Feeds 'count' windows of samples with the given latency while up to 'concurrency' requests are in flight
+    private static long windows(AdaptiveConcurrencyLimiter limiter, long now, int count, long rtt, int concurrency) {
+        for (int window = 0; window < count; window++) {
+            List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+            for (int i = 0; i < Math.min(concurrency, limiter.getLimit()); i++) {
+                permits.add(limiter.tryAcquire(Priority.CRITICAL));
+            }
+            permits.forEach(permit -> permit.release(false));
+            for (int i = 0; i < 10; i++) {
+                limiter.onSample(Priority.CRITICAL, rtt, now + i);
+            }
+            now += WINDOW;
+            limiter.onSample(Priority.CRITICAL, rtt, now);
+        }
+        return now;
+    }
+    
+    static ConcurrencyLimitProperties properties(int initialLimit) {
+        ConcurrencyLimitProperties properties = new ConcurrencyLimitProperties();
+        properties.setInitialLimit(initialLimit);
+        properties.setMinLimit(1);
+        properties.setMaxLimit(1000);
+        properties.setWindow(Duration.ofNanos(WINDOW));
+        return properties;
+    }
+}
@@ -0,0 +1,85 @@
+package co.psyke.test_coverage.concurrency;
+
+import co.psyke.test_coverage.cache.UserETagCache;
+import co.psyke.test_coverage.controller.UserController;
+import co.psyke.test_coverage.model.User;
+import co.psyke.test_coverage.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+class ConcurrencyLimitInterceptorTest {
+    
+    @Mock
+    private UserService userService;
+    
+    @Spy
+    private UserETagCache userETagCache = new UserETagCache();
+    
+    @InjectMocks
+    private UserController userController;
+    
+    private AdaptiveConcurrencyLimiter limiter;
+    
+    private MockMvc mockMvc;
+    
+    @BeforeEach
+    void setUp() {
+        limiter = new AdaptiveConcurrencyLimiter(AdaptiveConcurrencyLimiterTest.properties(4));
+        mockMvc = MockMvcBuilders.standaloneSetup(userController)
+            .addInterceptors(new ConcurrencyLimitInterceptor(limiter))
+            .build();
+    }
+    
+    @Test
+    void testSaturatedService_ShedsScansButAdmitsSpends() throws Exception {
+        // Two slots taken by requests still in flight; bulk work may only use half of the limit
+        AdaptiveConcurrencyLimiter.Permit first = limiter.tryAcquire(Priority.NORMAL);
+        AdaptiveConcurrencyLimiter.Permit second = limiter.tryAcquire(Priority.NORMAL);
+        User annaVerdi = User.builder().id(3L).username("anna_verdi").credits(700.00).build();
+        when(userService.spendCredits(3L, 100.00)).thenReturn(annaVerdi);
+        
+        mockMvc.perform(get("/api/users"))
+            .andExpect(status().isServiceUnavailable())
+            .andExpect(header().string("Retry-After", "1"));
+        
+        mockMvc.perform(post("/api/users/3/spend")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"amount\": 100.0}"))
+            .andExpect(status().isOk());
+        
+        verify(userService, never()).getAllUsers();
+        assertEquals(1, limiter.getRejected(Priority.BULK));
+        assertEquals(2, limiter.getInflight());
+        
+        first.release(false);
+        second.release(false);
+    }
+    
+    @Test
+    void testPermitIsReleasedAfterEachRequest() throws Exception {
+        when(userService.getAllUsers()).thenReturn(List.of());
+        
+        for (int i = 0; i < 10; i++) {
+            mockMvc.perform(get("/api/users")).andExpect(status().isOk());
+        }
+        
+        assertEquals(0, limiter.getInflight());
+        assertEquals(0, limiter.getRejected(Priority.BULK));
+    }
+}
@@ -0,0 +1,38 @@
+package co.psyke.test_coverage.config;
+
+import co.psyke.test_coverage.controller.UserController;
+import co.psyke.test_coverage.model.User;
+import co.psyke.test_coverage.stream.CreditEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.annotation.ReflectiveRuntimeHintsRegistrar;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.springframework.boot.context.properties.bind.BindableRuntimeHintsRegistrar;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AotHintsConfigurationTest {
+    
+    @Test
+    void testDefaultUsersBindInNativeImage() {
+        RuntimeHints hints = new RuntimeHints();
+        BindableRuntimeHintsRegistrar.forTypes(DatabaseInitializationProperties.class).registerHints(hints);
+        
+        // The list elements are created and filled through their setters
+        assertTrue(RuntimeHintsPredicates.reflection()
+            .onType(DatabaseInitializationProperties.UserConfig.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection()
+            .onMethodInvocation(DatabaseInitializationProperties.UserConfig.class, "setCredits").test(hints));
+    }
+    
+    @Test
+    void testDynamicallySerializedTypesAreRegistered() {
+        RuntimeHints hints = new RuntimeHints();
+        new ReflectiveRuntimeHintsRegistrar().registerRuntimeHints(hints, AotHintsConfiguration.class);
+        
+        assertTrue(RuntimeHintsPredicates.reflection().onMethodInvocation(User.class, "getCredits").test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethodInvocation(CreditEvent.class, "getUserId").test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection()
+            .onMethodInvocation(UserController.ErrorResponse.class, "getMessage").test(hints));
+    }
+}
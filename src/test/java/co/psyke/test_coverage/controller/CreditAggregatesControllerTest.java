@@ -0,0 +1,73 @@
+package co.psyke.test_coverage.controller;
+
+import co.psyke.test_coverage.aggregates.CreditAggregates;
+import co.psyke.test_coverage.config.CreditAggregateProperties;
+import co.psyke.test_coverage.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+class CreditAggregatesControllerTest {
+    
+    @Spy
+    private CreditAggregateProperties properties = new CreditAggregateProperties();
+    
+    @Spy
+    private CreditAggregates creditAggregates = new CreditAggregates(new CreditAggregateProperties());
+    
+    @InjectMocks
+    private CreditAggregatesController controller;
+    
+    private MockMvc mockMvc;
+    
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+        creditAggregates.updated(User.builder().id(1L).credits(1500.00).active(true).build());
+        creditAggregates.updated(User.builder().id(2L).credits(3000.00).active(false).build());
+    }
+    
+    @Test
+    void testGetSummary() throws Exception {
+        mockMvc.perform(get("/api/users/credits/summary"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.totalCredits").value(4500.00))
+            .andExpect(jsonPath("$.users").value(2))
+            .andExpect(jsonPath("$.activeUsers").value(1));
+    }
+    
+    @Test
+    void testGetDistribution() throws Exception {
+        mockMvc.perform(get("/api/users/credits/distribution"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[3].from").value(1000.0))
+            .andExpect(jsonPath("$[3].users").value(1))
+            .andExpect(jsonPath("$[6].to").doesNotExist());
+    }
+    
+    @Test
+    void testGetTop() throws Exception {
+        mockMvc.perform(get("/api/users/credits/top").param("limit", "1"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].userId").value(2))
+            .andExpect(jsonPath("$[0].credits").value(3000.00))
+            .andExpect(jsonPath("$[0].cents").doesNotExist());
+    }
+    
+    @Test
+    void testGetTop_LimitOutOfRange() throws Exception {
+        mockMvc.perform(get("/api/users/credits/top").param("limit", "1000"))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("Limit must be between 1 and 100"));
+    }
+}
@@ -1,6 +1,9 @@
 package co.psyke.test_coverage.controller;
 
+import co.psyke.test_coverage.cache.UserETagCache;
+import co.psyke.test_coverage.exception.HoldNotFoundException;
 import co.psyke.test_coverage.exception.InsufficientCreditsException;
+import co.psyke.test_coverage.model.CreditHold;
 import co.psyke.test_coverage.model.User;
 import co.psyke.test_coverage.service.UserService;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -9,15 +12,19 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
@@ -30,6 +37,9 @@ class UserControllerTest {
     @Mock
     private UserService userService;
     
+    @Spy
+    private UserETagCache userETagCache = new UserETagCache();
+    
     @InjectMocks
     private UserController userController;
     
@@ -143,6 +153,40 @@ class UserControllerTest {
         verify(userService, times(1)).getUserById(999L);
     }
     
+    @Test
+    void testGetUserById_ReturnsETag() throws Exception {
+        when(userService.getUserById(1L)).thenReturn(Optional.of(marioRossi));
+        
+        String etag = mockMvc.perform(get("/api/users/1"))
+            .andExpect(status().isOk())
+            .andExpect(header().exists("ETag"))
+            .andReturn().getResponse().getHeader("ETag");
+        
+        assertEquals(UserETagCache.userTag(userETagCache.get(1L)), etag);
+    }
+    
+    @Test
+    void testGetUserById_NotModifiedWithoutServiceCall() throws Exception {
+        String etag = UserETagCache.userTag(userETagCache.put(marioRossi));
+        
+        mockMvc.perform(get("/api/users/1").header("If-None-Match", etag))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string("ETag", etag))
+            .andExpect(content().string(""));
+        
+        verify(userService, never()).getUserById(anyLong());
+    }
+    
+    @Test
+    void testGetUserById_StaleETagReturnsBody() throws Exception {
+        userETagCache.put(marioRossi);
+        when(userService.getUserById(1L)).thenReturn(Optional.of(marioRossi));
+        
+        mockMvc.perform(get("/api/users/1").header("If-None-Match", "\"u-stale\""))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.username").value("mario_rossi"));
+    }
+    
     @Test
     void testGetUserByUsername() throws Exception {
         when(userService.getUserByUsername("luigi_bianchi")).thenReturn(Optional.of(luigiBianchi));
@@ -192,8 +236,7 @@ class UserControllerTest {
     
     @Test
     void testDeleteUser() throws Exception {
-        when(userService.userExists(1L)).thenReturn(true);
-        doNothing().when(userService).deleteUser(1L);
+        when(userService.deleteUser(1L)).thenReturn(true);
         
         mockMvc.perform(delete("/api/users/1"))
             .andExpect(status().isNoContent());
@@ -203,35 +246,90 @@ class UserControllerTest {
     
     @Test
     void testDeleteUser_NotFound() throws Exception {
-        when(userService.userExists(999L)).thenReturn(false);
+        when(userService.deleteUser(999L)).thenReturn(false);
         
         mockMvc.perform(delete("/api/users/999"))
             .andExpect(status().isNotFound());
         
-        verify(userService, never()).deleteUser(anyLong());
+        verify(userService, never()).userExists(anyLong());
+    }
+    
+    @Test
+    void testDeleteUsers() throws Exception {
+        when(userService.deleteUsers(List.of(1L, 2L, 999L), null, null)).thenReturn(2L);
+        
+        mockMvc.perform(delete("/api/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"ids\": [1, 2, 999]}"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.deleted").value(2));
+    }
+    
+    @Test
+    void testDeleteUsers_WithoutCriteria() throws Exception {
+        when(userService.deleteUsers(null, null, null))
+            .thenThrow(new IllegalArgumentException("Give the ids or at least one filter of the users to delete"));
+        
+        mockMvc.perform(delete("/api/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{}"))
+            .andExpect(status().isBadRequest());
     }
     
     // Credits Endpoints Tests
     @Test
     void testGetCredits() throws Exception {
-        when(userService.getCredits(1L)).thenReturn(1500.00);
+        when(userService.getUserById(1L)).thenReturn(Optional.of(marioRossi));
         
         mockMvc.perform(get("/api/users/1/credits"))
             .andExpect(status().isOk())
             .andExpect(jsonPath("$.userId").value(1))
             .andExpect(jsonPath("$.credits").value(1500.00));
         
-        verify(userService, times(1)).getCredits(1L);
+        verify(userService, times(1)).getUserById(1L);
+    }
+    
+    @Test
+    void testGetCredits_FirstReadReturnsETag() throws Exception {
+        when(userService.getUserById(1L)).thenReturn(Optional.of(marioRossi));
+        
+        String etag = mockMvc.perform(get("/api/users/1/credits"))
+            .andExpect(status().isOk())
+            .andExpect(header().exists("ETag"))
+            .andReturn().getResponse().getHeader("ETag");
+        
+        assertEquals(UserETagCache.creditsTag(userETagCache.get(1L)), etag);
+        
+        mockMvc.perform(get("/api/users/1/credits").header("If-None-Match", etag))
+            .andExpect(status().isNotModified());
+    }
+    
+    @Test
+    void testETag_DoesNotDependOnPassword() {
+        String tag = new UserETagCache().put(marioRossi);
+        marioRossi.setPassword("another-password");
+        
+        assertEquals(tag, new UserETagCache().put(marioRossi));
+    }
+    
+    @Test
+    void testGetCredits_NotModified() throws Exception {
+        String etag = UserETagCache.creditsTag(userETagCache.put(marioRossi));
+        
+        mockMvc.perform(get("/api/users/1/credits").header("If-None-Match", etag))
+            .andExpect(status().isNotModified());
+        
+        verify(userService, never()).getUserById(anyLong());
     }
     
     @Test
     void testGetCredits_UserNotFound() throws Exception {
-        when(userService.getCredits(999L)).thenThrow(new RuntimeException("User not found"));
+        when(userService.getUserById(999L)).thenReturn(Optional.empty());
         
         mockMvc.perform(get("/api/users/999/credits"))
             .andExpect(status().isNotFound());
         
-        verify(userService, times(1)).getCredits(999L);
+        verify(userService, times(1)).getUserById(999L);
     }
     
     @Test
@@ -276,6 +374,65 @@ class UserControllerTest {
         verify(userService, times(1)).spendCredits(3L, 900.00);
     }
     
+    @Test
+    void testReserveCredits() throws Exception {
+        CreditHold hold = CreditHold.builder()
+            .id(7L)
+            .userId(3L)
+            .amount(100.00)
+            .expiresAt(Instant.parse("2030-01-01T00:05:00Z"))
+            .build();
+        
+        when(userService.reserveCredits(3L, 100.00, Duration.ofSeconds(300))).thenReturn(hold);
+        
+        mockMvc.perform(post("/api/users/3/holds")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"amount\": 100.0, \"ttlSeconds\": 300}"))
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.id").value(7))
+            .andExpect(jsonPath("$.userId").value(3))
+            .andExpect(jsonPath("$.amount").value(100.00));
+    }
+    
+    @Test
+    void testReserveCredits_InsufficientCredits() throws Exception {
+        when(userService.reserveCredits(3L, 900.00, null))
+            .thenThrow(new InsufficientCreditsException("Crediti insufficienti. Disponibili: 800.00, Richiesti: 900.00"));
+        
+        mockMvc.perform(post("/api/users/3/holds")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"amount\": 900.0}"))
+            .andExpect(status().isBadRequest());
+    }
+    
+    @Test
+    void testCaptureHold() throws Exception {
+        User userAfterCapture = User.builder().id(3L).username("anna_verdi").credits(700.00).build();
+        when(userService.captureHold(3L, 7L)).thenReturn(userAfterCapture);
+        
+        mockMvc.perform(post("/api/users/3/holds/7/capture"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.credits").value(700.00));
+    }
+    
+    @Test
+    void testReleaseHold_NotFound() throws Exception {
+        doThrow(new HoldNotFoundException("Hold 7 not found for user 3")).when(userService).releaseHold(3L, 7L);
+        
+        mockMvc.perform(delete("/api/users/3/holds/7"))
+            .andExpect(status().isNotFound())
+            .andExpect(jsonPath("$.message").value("Hold 7 not found for user 3"));
+    }
+    
+    @Test
+    void testReleaseHold_UserNotFound() throws Exception {
+        doThrow(new RuntimeException("User not found with id: 99")).when(userService).releaseHold(99L, 7L);
+        
+        mockMvc.perform(delete("/api/users/99/holds/7"))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("User not found with id: 99"));
+    }
+    
     @Test
     void testAddCredits() throws Exception {
         User userAfterAdd = User.builder()
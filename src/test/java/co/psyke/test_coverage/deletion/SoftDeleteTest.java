@@ -0,0 +1,94 @@
+package co.psyke.test_coverage.deletion;
+
+import co.psyke.test_coverage.model.CreditHold;
+import co.psyke.test_coverage.model.User;
+import co.psyke.test_coverage.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:softdelete",
+    "app.deletion.soft=true",
+    "app.deletion.chunk-size=2",
+    "app.deletion.purge-interval=1h"
+})
+class SoftDeleteTest {
+    
+    private static final AtomicInteger USERS = new AtomicInteger();
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private SoftDeletePurger purger;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Test
+    void testSoftDeletedUserIsHiddenUntilPurged() {
+        User user = createUser(true);
+        long count = userService.countUsers();
+        
+        assertTrue(userService.deleteUser(user.getId()));
+        
+        // Still stored, but invisible and not deletable twice
+        assertEquals(1, rows(user.getId()));
+        assertTrue(userService.getUserById(user.getId()).isEmpty());
+        assertTrue(userService.getUserByUsername(user.getUsername()).isEmpty());
+        assertFalse(userService.userExists(user.getId()));
+        assertEquals(count - 1, userService.countUsers());
+        assertFalse(userService.getAllUsers().stream().anyMatch(found -> found.getId().equals(user.getId())));
+        assertFalse(userService.deleteUser(user.getId()));
+        assertThrows(RuntimeException.class, () -> userService.addCredits(user.getId(), 10.00));
+        
+        assertTrue(purger.purge() >= 1);
+        assertEquals(0, rows(user.getId()));
+    }
+    
+    @Test
+    void testHoldOfSoftDeletedUserCannotBeCaptured() {
+        User user = createUser(true);
+        CreditHold hold = userService.reserveCredits(user.getId(), 100.00, null);
+        assertTrue(userService.deleteUser(user.getId()));
+        
+        assertThrows(RuntimeException.class, () -> userService.captureHold(user.getId(), hold.getId()));
+        
+        assertEquals(500.00, jdbcTemplate.queryForObject(
+            "SELECT credits FROM users WHERE id = ?", Double.class, user.getId()));
+    }
+    
+    @Test
+    void testBulkSoftDeleteByFilter() {
+        List<Long> inactive = List.of(createUser(false).getId(), createUser(false).getId(), createUser(false).getId());
+        User active = createUser(true);
+        
+        assertEquals(3, userService.deleteUsers(null, false, null));
+        
+        inactive.forEach(id -> assertFalse(userService.userExists(id)));
+        assertTrue(userService.userExists(active.getId()));
+        assertEquals(0, userService.deleteUsers(inactive, null, null));
+    }
+    
+    private int rows(Long id) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users WHERE id = ?", Integer.class, id);
+    }
+    
+    private User createUser(boolean active) {
+        int n = USERS.incrementAndGet();
+        return userService.createUser(User.builder()
+            .username("soft_" + n)
+            .email("soft_" + n + "@example.com")
+            .password("password123")
+            .active(active)
+            .credits(500.00)
+            .build());
+    }
+}
@@ -0,0 +1,233 @@
+package co.psyke.test_coverage.holds;
+
+import co.psyke.test_coverage.cache.UserETagCache;
+import co.psyke.test_coverage.exception.HoldNotFoundException;
+import co.psyke.test_coverage.exception.InsufficientCreditsException;
+import co.psyke.test_coverage.model.CreditHold;
+import co.psyke.test_coverage.model.User;
+import co.psyke.test_coverage.repository.CreditHoldRepository;
+import co.psyke.test_coverage.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:holds",
+    "app.holds.tick=100ms"
+})
+class CreditHoldTest {
+    
+    private static final AtomicInteger USERS = new AtomicInteger();
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private CreditHoldRepository creditHoldRepository;
+    
+    @Autowired
+    private UserETagCache userETagCache;
+    
+    private User user;
+    
+    @BeforeEach
+    void setUp() {
+        int n = USERS.incrementAndGet();
+        user = userService.createUser(User.builder()
+            .username("holder_" + n)
+            .email("holder_" + n + "@example.com")
+            .password("password123")
+            .active(true)
+            .credits(500.00)
+            .build());
+    }
+    
+    @Test
+    void testReserveThenCapture() {
+        CreditHold hold = userService.reserveCredits(user.getId(), 200.00, null);
+        
+        User reserved = userService.getUserById(user.getId()).orElseThrow();
+        assertEquals(500.00, reserved.getCredits());
+        assertEquals(200.00, reserved.getReserved());
+        
+        User captured = userService.captureHold(user.getId(), hold.getId());
+        assertEquals(300.00, captured.getCredits());
+        assertEquals(0.00, captured.getReserved());
+        assertFalse(creditHoldRepository.existsById(hold.getId()));
+    }
+    
+    @Test
+    void testReleaseRestoresAvailableCredits() {
+        CreditHold hold = userService.reserveCredits(user.getId(), 450.00, null);
+        assertThrows(InsufficientCreditsException.class, () -> userService.spendCredits(user.getId(), 100.00));
+        
+        userService.releaseHold(user.getId(), hold.getId());
+        
+        assertEquals(400.00, userService.spendCredits(user.getId(), 100.00).getCredits());
+        assertThrows(HoldNotFoundException.class, () -> userService.captureHold(user.getId(), hold.getId()));
+    }
+    
+    @Test
+    void testReserveMoreThanAvailable() {
+        userService.reserveCredits(user.getId(), 300.00, null);
+        
+        assertThrows(InsufficientCreditsException.class,
+            () -> userService.reserveCredits(user.getId(), 300.00, null));
+        assertEquals(300.00, userService.getUserById(user.getId()).orElseThrow().getReserved());
+    }
+    
+    @Test
+    void testHoldOfAnotherUserIsNotFound() {
+        CreditHold hold = userService.reserveCredits(user.getId(), 100.00, null);
+        
+        assertThrows(HoldNotFoundException.class, () -> userService.captureHold(user.getId() + 1000, hold.getId()));
+    }
+    
+    @Test
+    void testExpiredHoldIsReleased() throws Exception {
+        CreditHold hold = userService.reserveCredits(user.getId(), 100.00, Duration.ofMillis(300));
+        
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (creditHoldRepository.existsById(hold.getId()) && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        
+        assertFalse(creditHoldRepository.existsById(hold.getId()));
+        assertEquals(0.00, userService.getUserById(user.getId()).orElseThrow().getReserved());
+        assertThrows(HoldNotFoundException.class, () -> userService.captureHold(user.getId(), hold.getId()));
+    }
+    
+    @Test
+    void testCaptureOfDeletedUserChangesNothing() {
+        CreditHold hold = userService.reserveCredits(user.getId(), 100.00, null);
+        assertTrue(userService.deleteUser(user.getId()));
+        
+        RuntimeException exception = assertThrows(RuntimeException.class,
+            () -> userService.captureHold(user.getId(), hold.getId()));
+        
+        assertFalse(exception instanceof HoldNotFoundException);
+        // Rolled back with the failed capture, left to expire
+        assertTrue(creditHoldRepository.existsById(hold.getId()));
+        userService.releaseHold(user.getId(), hold.getId());
+        assertFalse(creditHoldRepository.existsById(hold.getId()));
+    }
+    
+    @Test
+    void testConcurrentCaptureAndReleaseClaimTheHoldOnce() throws Exception {
+        CreditHold hold = userService.reserveCredits(user.getId(), 100.00, null);
+        
+        List<Callable<Boolean>> attempts = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            attempts.add(() -> claimed(() -> userService.captureHold(user.getId(), hold.getId())));
+            attempts.add(() -> claimed(() -> userService.releaseHold(user.getId(), hold.getId())));
+        }
+        int claims = 0;
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (Future<Boolean> attempt : executor.invokeAll(attempts)) {
+                claims += attempt.get() ? 1 : 0;
+            }
+        }
+        
+        assertEquals(1, claims);
+        User after = userService.getUserById(user.getId()).orElseThrow();
+        assertEquals(0.00, after.getReserved());
+        assertTrue(after.getCredits() == 400.00 || after.getCredits() == 500.00);
+    }
+    
+    @Test
+    void testEveryWriteRaisesTheVersionAndRetagsTheUser() {
+        List<Long> versions = new ArrayList<>();
+        versions.add(version());
+        
+        CreditHold hold = userService.reserveCredits(user.getId(), 100.00, null);
+        versions.add(version());
+        userService.captureHold(user.getId(), hold.getId());
+        versions.add(version());
+        userService.spendCredits(user.getId(), 10.00);
+        versions.add(version());
+        userService.addCredits(user.getId(), 20.00);
+        versions.add(version());
+        User details = userService.getUserById(user.getId()).orElseThrow();
+        details.setFullName("Holder");
+        assertEquals(versions.getLast() + 1, userService.updateUser(user.getId(), details).getVersion());
+        versions.add(version());
+        
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L, 5L), versions);
+        User current = userService.getUserById(user.getId()).orElseThrow();
+        assertEquals("Holder", current.getFullName());
+        assertEquals(410.00, current.getCredits());
+        assertEquals(new UserETagCache().put(current), userETagCache.get(user.getId()));
+    }
+    
+    @Test
+    void testConcurrentSpendsAndCapturesNeverLoseOrOverdrawCredits() throws Exception {
+        // In units of 10 credits, three times what the user has
+        AtomicInteger taken = new AtomicInteger();
+        List<Callable<Void>> clients = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            clients.add(() -> {
+                for (int j = 0; j < 40; j++) {
+                    if (insufficient(() -> userService.spendCredits(user.getId(), 10.00))) {
+                        continue;
+                    }
+                    taken.incrementAndGet();
+                }
+                return null;
+            });
+            clients.add(() -> {
+                for (int j = 0; j < 40; j++) {
+                    if (insufficient(() -> userService.captureHold(user.getId(),
+                            userService.reserveCredits(user.getId(), 10.00, null).getId()))) {
+                        continue;
+                    }
+                    taken.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (Future<Void> client : executor.invokeAll(clients)) {
+                client.get();
+            }
+        }
+        
+        User after = userService.getUserById(user.getId()).orElseThrow();
+        assertEquals(0.00, after.getReserved());
+        assertEquals(500.00 - 10.00 * taken.get(), after.getCredits(), 0.001);
+        assertTrue(after.getCredits() >= 0);
+    }
+    
+    private static boolean insufficient(Runnable operation) {
+        try {
+            operation.run();
+            return false;
+        } catch (InsufficientCreditsException e) {
+            return true;
+        }
+    }
+    
+    private static boolean claimed(Runnable claim) {
+        try {
+            claim.run();
+            return true;
+        } catch (HoldNotFoundException e) {
+            return false;
+        }
+    }
+    
+    private long version() {
+        return userService.getUserById(user.getId()).orElseThrow().getVersion();
+    }
+}
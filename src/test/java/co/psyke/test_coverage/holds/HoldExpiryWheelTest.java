@@ -0,0 +1,71 @@
+package co.psyke.test_coverage.holds;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HoldExpiryWheelTest {
+    
+    private static final long START = 1_000_000;
+    
+    @Test
+    void testHoldsExpireOnTheirTick() {
+        HoldExpiryWheel wheel = new HoldExpiryWheel(100, 8, START);
+        HoldKey first = new HoldKey(1, 1);
+        HoldKey second = new HoldKey(2, 2);
+        wheel.schedule(first, Instant.ofEpochMilli(START + 250));
+        wheel.schedule(second, Instant.ofEpochMilli(START + 550));
+        
+        assertEquals(List.of(), wheel.advance(START + 200));
+        assertEquals(List.of(first), wheel.advance(START + 300));
+        assertEquals(List.of(), wheel.advance(START + 500));
+        assertEquals(List.of(second), wheel.advance(START + 600));
+        assertEquals(0, wheel.size());
+    }
+    
+    @Test
+    void testDeadlinesBeyondOneRotationWaitForLaterVisits() {
+        HoldExpiryWheel wheel = new HoldExpiryWheel(100, 8, START);
+        HoldKey key = new HoldKey(1, 1);
+        // Same slot as START + 300, two rotations later
+        wheel.schedule(key, Instant.ofEpochMilli(START + 1900));
+        
+        assertEquals(List.of(), wheel.advance(START + 300));
+        assertEquals(List.of(), wheel.advance(START + 1100));
+        assertEquals(List.of(key), wheel.advance(START + 1900));
+    }
+    
+    @Test
+    void testCancelledHoldsNeverExpire() {
+        HoldExpiryWheel wheel = new HoldExpiryWheel(100, 8, START);
+        HoldKey key = new HoldKey(1, 1);
+        wheel.schedule(key, Instant.ofEpochMilli(START + 100));
+        
+        wheel.cancel(key);
+        
+        assertEquals(List.of(), wheel.advance(START + 1000));
+        assertEquals(0, wheel.size());
+    }
+    
+    @Test
+    void testPastDeadlinesExpireOnNextTick() {
+        HoldExpiryWheel wheel = new HoldExpiryWheel(100, 8, START);
+        HoldKey key = new HoldKey(1, 1);
+        wheel.schedule(key, Instant.ofEpochMilli(START - 5000));
+        
+        assertEquals(List.of(key), wheel.advance(START + 100));
+    }
+    
+    @Test
+    void testLongPauseStillVisitsEverySlot() {
+        HoldExpiryWheel wheel = new HoldExpiryWheel(100, 8, START);
+        for (int i = 1; i <= 8; i++) {
+            wheel.schedule(new HoldKey(i, i), Instant.ofEpochMilli(START + i * 100));
+        }
+        
+        assertEquals(8, wheel.advance(START + 60_000).size());
+    }
+}
@@ -0,0 +1,176 @@
+package co.psyke.test_coverage.jobs;
+
+import co.psyke.test_coverage.aggregates.CreditAggregates;
+import co.psyke.test_coverage.model.CreditJob;
+import co.psyke.test_coverage.model.CreditJobChunk;
+import co.psyke.test_coverage.model.User;
+import co.psyke.test_coverage.repository.CreditJobChunkRepository;
+import co.psyke.test_coverage.repository.CreditJobRepository;
+import co.psyke.test_coverage.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:jobs",
+    "app.jobs.chunk-size=3",
+    "app.jobs.parallelism=2"
+})
+class CreditJobServiceTest {
+    
+    private static final AtomicInteger USERS = new AtomicInteger();
+    
+    @Autowired
+    private CreditJobService creditJobService;
+    
+    @Autowired
+    private CreditJobRepository creditJobRepository;
+    
+    @Autowired
+    private CreditJobChunkRepository creditJobChunkRepository;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private CreditAggregates creditAggregates;
+    
+    @Test
+    void testGrant_OnlyActiveUsers() throws Exception {
+        User inactive = createUser(false, 100.00);
+        Map<Long, Double> before = credits();
+        double total = creditAggregates.summary().totalCredits();
+        
+        CreditJob job = creditJobService.startJob(CreditJob.Operation.GRANT, 50.00, true);
+        CreditJobService.Progress progress = await(job.getId());
+        
+        assertEquals(CreditJob.Status.COMPLETED, progress.job().getStatus());
+        assertEquals(progress.job().getTotalChunks(), progress.completedChunks());
+        assertEquals(before.size() - 1, progress.updatedUsers());
+        assertEquals(100.00, userService.getCredits(inactive.getId()));
+        before.forEach((id, credits) -> {
+            if (!id.equals(inactive.getId())) {
+                assertEquals(credits + 50.00, userService.getCredits(id), 0.001);
+            }
+        });
+        assertEquals(total + 50.00 * (before.size() - 1), creditAggregates.summary().totalCredits(), 0.001);
+        assertTrue(creditJobService.getChunks(job.getId()).stream()
+            .allMatch(chunk -> chunk.getDone() && chunk.getUsersPerSecond() != null));
+    }
+    
+    @Test
+    void testGrant_NotLostToConcurrentSpends() throws Exception {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            users.add(createUser(true, 1000.00));
+        }
+        Map<Long, AtomicInteger> spent = new ConcurrentHashMap<>();
+        
+        CreditJob job = creditJobService.startJob(CreditJob.Operation.GRANT, 50.00, true);
+        List<Callable<Void>> spenders = new ArrayList<>();
+        for (User user : users) {
+            spent.put(user.getId(), new AtomicInteger());
+            spenders.add(() -> {
+                while (creditJobService.isRunning(job.getId())) {
+                    userService.spendCredits(user.getId(), 1.00);
+                    spent.get(user.getId()).incrementAndGet();
+                }
+                return null;
+            });
+        }
+        try (ExecutorService executor = Executors.newFixedThreadPool(users.size())) {
+            for (Future<Void> spender : executor.invokeAll(spenders)) {
+                spender.get();
+            }
+        }
+        
+        assertEquals(CreditJob.Status.COMPLETED, await(job.getId()).job().getStatus());
+        for (User user : users) {
+            assertEquals(1050.00 - spent.get(user.getId()).get(), userService.getCredits(user.getId()), 0.001);
+        }
+    }
+    
+    @Test
+    void testExpire_KeepsReservedCredits() throws Exception {
+        User user = createUser(true, 300.00);
+        userService.reserveCredits(user.getId(), 120.00, null);
+        User poor = createUser(true, 10.00);
+        
+        CreditJob job = creditJobService.startJob(CreditJob.Operation.EXPIRE, 250.00, false);
+        
+        assertEquals(CreditJob.Status.COMPLETED, await(job.getId()).job().getStatus());
+        assertEquals(120.00, userService.getCredits(user.getId()));
+        assertEquals(0.00, userService.getCredits(poor.getId()));
+    }
+    
+    @Test
+    void testResume_SkipsCompletedChunks() throws Exception {
+        User first = createUser(true, 100.00);
+        User second = createUser(true, 100.00);
+        
+        // As left by a crash: the chunk of the first user was applied, the other was not
+        CreditJob job = creditJobRepository.save(CreditJob.builder()
+            .operation(CreditJob.Operation.GRANT)
+            .amount(10.00)
+            .activeOnly(true)
+            .status(CreditJob.Status.RUNNING)
+            .totalChunks(2)
+            .createdAt(Instant.now())
+            .build());
+        creditJobChunkRepository.saveAll(List.of(
+            CreditJobChunk.builder().jobId(job.getId()).startId(first.getId()).endId(first.getId())
+                .done(true).updatedUsers(1).durationMillis(1L).completedAt(Instant.now()).build(),
+            CreditJobChunk.builder().jobId(job.getId()).startId(second.getId()).endId(second.getId()).build()));
+        
+        creditJobService.resumeInterrupted();
+        CreditJobService.Progress progress = await(job.getId());
+        
+        assertEquals(CreditJob.Status.COMPLETED, progress.job().getStatus());
+        assertEquals(2, progress.completedChunks());
+        assertEquals(100.00, userService.getCredits(first.getId()));
+        assertEquals(110.00, userService.getCredits(second.getId()));
+    }
+    
+    @Test
+    void testStartJob_InvalidAmount() {
+        assertThrows(IllegalArgumentException.class,
+            () -> creditJobService.startJob(CreditJob.Operation.GRANT, 0.0, true));
+    }
+    
+    private CreditJobService.Progress await(Long id) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (creditJobService.isRunning(id) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        return creditJobService.getProgress(id).orElseThrow();
+    }
+    
+    private Map<Long, Double> credits() {
+        return userService.getAllUsers().stream().collect(Collectors.toMap(User::getId, User::getCredits));
+    }
+    
+    private User createUser(boolean active, double credits) {
+        int n = USERS.incrementAndGet();
+        return userService.createUser(User.builder()
+            .username("job_" + n)
+            .email("job_" + n + "@example.com")
+            .password("password123")
+            .active(active)
+            .credits(credits)
+            .build());
+    }
+}
@@ -0,0 +1,177 @@
+package co.psyke.test_coverage.load;
+
+import co.psyke.test_coverage.TestCoverageApplication;
+import co.psyke.test_coverage.model.User;
+import co.psyke.test_coverage.service.UserService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the in-memory database with the durable profile, with and without
+ * write delay:
+ * <ul>
+ *   <li>credit-write throughput: {@code load.threads} threads spending through
+ *   {@link UserService} for {@code load.duration-seconds};</li>
+ *   <li>recovery: the database is then closed without storing anything, as a
+ *   crash would, and the time until the restarted application answers is
+ *   measured along with the acknowledged spends that were lost. The in-memory
+ *   mode loses everything, so its recovery time is a restart plus re-seeding
+ *   the same users.</li>
+ * </ul>
+ * Every mode first runs once for {@code load.warmup-seconds} with its result
+ * discarded, so the JIT and the connection pool are warm for all of them. The
+ * measured runs then repeat {@code load.rounds} times, each round starting
+ * from the next mode, so no mode always benefits from going last.
+ * <p>
+ * Only runs with {@code mvn test -Pload-test}; the results are printed and
+ * written to {@code durability.csv} in {@code load.output}.
+ */
+@Tag("load")
+class DurableStorageBenchmark {
+    
+    private static final BigDecimal INITIAL_CREDITS = BigDecimal.valueOf(10_000_000);
+    
+    @TempDir
+    private Path directory;
+    
+    @Test
+    void compareWithInMemory() throws Exception {
+        int users = Integer.getInteger("load.users", 2000);
+        int threads = Integer.getInteger("load.threads", 8);
+        Duration duration = Duration.ofSeconds(Long.getLong("load.duration-seconds", 10));
+        Duration warmup = Duration.ofSeconds(Long.getLong("load.warmup-seconds", 30));
+        int rounds = Integer.getInteger("load.rounds", 3);
+        
+        List<String> modes = List.of("in-memory", "durable", "durable-no-write-delay");
+        for (String mode : modes) {
+            run(mode, "warmup", users, threads, warmup);
+        }
+        
+        List<String> rows = new ArrayList<>();
+        rows.add("round,mode,users,threads,spends,spends_per_second,recovery_ms,lost_spends");
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < modes.size(); i++) {
+                String mode = modes.get((round + i) % modes.size());
+                rows.add(round + 1 + "," + run(mode, "round-" + (round + 1), users, threads, duration));
+            }
+        }
+        
+        System.out.println();
+        rows.forEach(row -> System.out.println(row.replace(",", "\t")));
+        Path output = Paths.get(System.getProperty("load.output", "target/load-reports"));
+        Files.createDirectories(output);
+        Files.write(output.resolve("durability.csv"), rows, StandardCharsets.UTF_8);
+    }
+    
+    private String run(String mode, String run, int users, int threads, Duration duration) throws Exception {
+        // A fresh database per run, so every run seeds the same users into an empty one
+        Path database = directory.resolve(mode + "-" + run);
+        boolean durable = !mode.equals("in-memory");
+        String[] args = switch (mode) {
+            case "in-memory" -> new String[] {"--spring.datasource.url=jdbc:h2:mem:benchmark"};
+            case "durable" -> new String[] {
+                    "--spring.profiles.active=durable",
+                    "--app.durable.directory=" + database};
+            default -> new String[] {
+                    "--spring.profiles.active=durable",
+                    "--app.durable.directory=" + database,
+                    "--spring.datasource.url=jdbc:h2:file:" + database + "/users;"
+                            + "CACHE_SIZE=65536;WRITE_DELAY=0;DB_CLOSE_ON_EXIT=FALSE"};
+        };
+        
+        long spends;
+        double throughput;
+        BigDecimal expected;
+        try (ConfigurableApplicationContext context = start(args)) {
+            UserService userService = context.getBean(UserService.class);
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            List<Long> ids = seed(userService, users);
+            
+            LongAdder acknowledged = new LongAdder();
+            long started = System.nanoTime();
+            long deadline = started + duration.toNanos();
+            try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+                for (int thread = 0; thread < threads; thread++) {
+                    executor.execute(() -> {
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        while (System.nanoTime() < deadline) {
+                            userService.spendCredits(ids.get(random.nextInt(ids.size())), 1.0);
+                            acknowledged.increment();
+                        }
+                    });
+                }
+            }
+            spends = acknowledged.sum();
+            throughput = spends / ((System.nanoTime() - started) / 1e9);
+            expected = sumCredits(jdbcTemplate);
+            
+            // No store, no checkpoint: whatever MVStore had not written yet is gone
+            jdbcTemplate.execute("SHUTDOWN IMMEDIATELY");
+        }
+        
+        long recoveryStarted = System.nanoTime();
+        long lost;
+        try (ConfigurableApplicationContext context = start(args)) {
+            UserService userService = context.getBean(UserService.class);
+            if (durable) {
+                assertTrue(userService.countUsers() >= users);
+                lost = sumCredits(context.getBean(JdbcTemplate.class)).subtract(expected).longValue();
+            } else {
+                seed(userService, users);
+                lost = spends;
+            }
+        }
+        long recoveryMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - recoveryStarted);
+        
+        return String.format(Locale.ROOT, "%s,%d,%d,%d,%.0f,%d,%d",
+                mode, users, threads, spends, throughput, recoveryMillis, lost);
+    }
+    
+    private static List<Long> seed(UserService userService, int count) {
+        List<User> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            batch.add(User.builder()
+                    .username("bench_" + i)
+                    .email("bench_" + i + "@example.com")
+                    .password("password123")
+                    .active(true)
+                    .credits(INITIAL_CREDITS.doubleValue())
+                    .build());
+        }
+        return userService.createUsers(batch).stream().map(User::getId).toList();
+    }
+    
+    private static BigDecimal sumCredits(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForObject("SELECT SUM(credits) FROM users", BigDecimal.class);
+    }
+    
+    private static ConfigurableApplicationContext start(String... args) {
+        List<String> arguments = new ArrayList<>(List.of(args));
+        arguments.add("--spring.jpa.show-sql=false");
+        return new SpringApplicationBuilder(TestCoverageApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(arguments.toArray(String[]::new));
+    }
+}
@@ -0,0 +1,131 @@
+package co.psyke.test_coverage.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load generator: requests are started on a fixed schedule of
+ * {@code rate} per second whether or not earlier ones have completed, each on
+ * its own virtual thread. Latency is measured from the scheduled start rather
+ * than the actual send, so a stalled server shows up in the percentiles
+ * instead of silently lowering the offered load (coordinated omission).
+ */
+class LoadGenerator {
+    
+    private static final long MAX_LATENCY = TimeUnit.MINUTES.toNanos(1);
+    
+    private final HttpClient client;
+    private final URI base;
+    private final List<Operation.SeededUser> users;
+    private final int maxOutstanding;
+    
+    LoadGenerator(URI base, List<Operation.SeededUser> users, int maxOutstanding) {
+        this.base = base;
+        this.users = users;
+        this.maxOutstanding = maxOutstanding;
+        this.client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+    
+    Result run(Scenario scenario, int rate, Duration duration) throws InterruptedException {
+        Result result = new Result(scenario);
+        Semaphore outstanding = new Semaphore(maxOutstanding);
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long total = duration.toNanos() / interval;
+        
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; i < total; i++) {
+                long scheduled = start + i * interval;
+                long wait = scheduled - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                Operation operation = scenario.nextOperation(random);
+                Operation.SeededUser user = users.get(scenario.nextUser(random, users.size()));
+                if (!outstanding.tryAcquire()) {
+                    // The client can't keep up either; count it rather than block the schedule
+                    result.dropped.get(operation).increment();
+                    continue;
+                }
+                executor.execute(() -> {
+                    try {
+                        send(operation, user, scheduled, result);
+                    } finally {
+                        outstanding.release();
+                    }
+                });
+            }
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+    
+    private void send(Operation operation, Operation.SeededUser user, long scheduled, Result result) {
+        int status;
+        try {
+            status = client.send(operation.request(base, user), HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (Exception e) {
+            status = -1;
+        }
+        long latency = Math.min(System.nanoTime() - scheduled, MAX_LATENCY);
+        result.record(operation, status, latency);
+    }
+    
+    static final class Result {
+        
+        final Scenario scenario;
+        final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+        final Histogram all = new ConcurrentHistogram(MAX_LATENCY, 3);
+        final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+        final Map<Operation, LongAdder> dropped = new EnumMap<>(Operation.class);
+        volatile long elapsedNanos;
+        
+        private Result(Scenario scenario) {
+            this.scenario = scenario;
+            for (Operation operation : Operation.values()) {
+                latencies.put(operation, new ConcurrentHistogram(MAX_LATENCY, 3));
+                errors.put(operation, new LongAdder());
+                dropped.put(operation, new LongAdder());
+            }
+        }
+        
+        private void record(Operation operation, int status, long latency) {
+            latencies.get(operation).recordValue(latency);
+            all.recordValue(latency);
+            statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+            if (status < 200 || status >= 300) {
+                errors.get(operation).increment();
+            }
+        }
+        
+        static long sum(Map<Operation, LongAdder> counters, Operation operation) {
+            if (operation != null) {
+                return counters.get(operation).sum();
+            }
+            return counters.values().stream().mapToLong(LongAdder::sum).sum();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package co.psyke.test_coverage.load;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the results of a load run to a directory:
+ * <ul>
+ *   <li>{@code summary.csv}: one row per scenario and operation with throughput
+ *   and p50/p99/p999/max latencies in milliseconds, the file to keep and diff
+ *   between builds;</li>
+ *   <li>{@code <scenario>.hgrm}: the full percentile distribution of each
+ *   scenario, loadable in the HdrHistogram plotter.</li>
+ * </ul>
+ * When a baseline {@code summary.csv} is given, the p99 and throughput change
+ * of every row is printed next to it.
+ */
+class LoadReport {
+    
+    static final String HEADER = "scenario,operation,rate,count,errors,dropped,throughput,p50_ms,p99_ms,p999_ms,max_ms";
+    
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+    
+    private final List<String> rows = new ArrayList<>();
+    
+    void add(LoadGenerator.Result result, int rate, PrintStream out) {
+        double seconds = result.elapsedNanos / 1e9;
+        out.printf(Locale.ROOT, "%n%s at %d req/s, %.1fs, statuses %s, dropped %d%n",
+                result.scenario, rate, seconds, statuses(result), LoadGenerator.Result.sum(result.dropped, null));
+        out.printf(Locale.ROOT, "  %-16s %8s %10s %9s %9s %9s %9s%n",
+                "operation", "count", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        
+        for (Map.Entry<Operation, Histogram> entry : result.latencies.entrySet()) {
+            if (entry.getValue().getTotalCount() > 0) {
+                row(result, rate, entry.getKey(), entry.getValue(), seconds, out);
+            }
+        }
+        row(result, rate, null, result.all, seconds, out);
+    }
+    
+    void write(Path directory, List<LoadGenerator.Result> results) throws IOException {
+        Files.createDirectories(directory);
+        List<String> lines = new ArrayList<>(rows.size() + 1);
+        lines.add(HEADER);
+        lines.addAll(rows);
+        Files.write(directory.resolve("summary.csv"), lines, StandardCharsets.UTF_8);
+        
+        for (LoadGenerator.Result result : results) {
+            Path file = directory.resolve(result.scenario.name().toLowerCase(Locale.ROOT) + ".hgrm");
+            try (PrintStream out = new PrintStream(Files.newOutputStream(file), false, StandardCharsets.UTF_8)) {
+                result.all.outputPercentileDistribution(out, NANOS_PER_MILLI);
+            }
+        }
+    }
+    
+    void compare(Path baseline, PrintStream out) throws IOException {
+        Map<String, String[]> previous = new HashMap<>();
+        for (String line : Files.readAllLines(baseline, StandardCharsets.UTF_8)) {
+            if (!line.equals(HEADER)) {
+                String[] fields = line.split(",");
+                previous.put(fields[0] + "," + fields[1], fields);
+            }
+        }
+        
+        out.printf(Locale.ROOT, "%nCompared with %s%n", baseline);
+        out.printf(Locale.ROOT, "  %-14s %-16s %12s %12s%n", "scenario", "operation", "req/s", "p99");
+        Map<String, String> changes = new TreeMap<>();
+        for (String row : rows) {
+            String[] fields = row.split(",");
+            String[] before = previous.get(fields[0] + "," + fields[1]);
+            if (before != null) {
+                changes.put(fields[0] + "," + fields[1], String.format(Locale.ROOT, "  %-14s %-16s %12s %12s",
+                        fields[0], fields[1], change(before[6], fields[6]), change(before[8], fields[8])));
+            }
+        }
+        changes.values().forEach(out::println);
+    }
+    
+    // A null operation is the total over the whole scenario
+    private void row(LoadGenerator.Result result, int rate, Operation operation, Histogram histogram, double seconds,
+            PrintStream out) {
+        String name = operation == null ? "ALL" : operation.name();
+        double throughput = histogram.getTotalCount() / seconds;
+        double p50 = histogram.getValueAtPercentile(50) / NANOS_PER_MILLI;
+        double p99 = histogram.getValueAtPercentile(99) / NANOS_PER_MILLI;
+        double p999 = histogram.getValueAtPercentile(99.9) / NANOS_PER_MILLI;
+        double max = histogram.getMaxValue() / NANOS_PER_MILLI;
+        out.printf(Locale.ROOT, "  %-16s %8d %10.1f %9.2f %9.2f %9.2f %9.2f%n",
+                name, histogram.getTotalCount(), throughput, p50, p99, p999, max);
+        rows.add(String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%d,%.1f,%.3f,%.3f,%.3f,%.3f",
+                result.scenario, name, rate, histogram.getTotalCount(),
+                LoadGenerator.Result.sum(result.errors, operation), LoadGenerator.Result.sum(result.dropped, operation),
+                throughput, p50, p99, p999, max));
+    }
+    
+    private static Map<Integer, Long> statuses(LoadGenerator.Result result) {
+        Map<Integer, Long> statuses = new TreeMap<>();
+        result.statuses.forEach((status, count) -> statuses.put(status, count.sum()));
+        return statuses;
+    }
+    
+    private static String change(String before, String after) {
+        double previous = Double.parseDouble(before);
+        double current = Double.parseDouble(after);
+        if (previous == 0) {
+            return "n/a";
+        }
+        return String.format(Locale.ROOT, "%+.1f%%", (current - previous) / previous * 100);
+    }
+}
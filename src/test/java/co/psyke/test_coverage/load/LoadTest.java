@@ -0,0 +1,107 @@
+package co.psyke.test_coverage.load;
+
+import co.psyke.test_coverage.model.User;
+import co.psyke.test_coverage.service.UserService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Boots the application on a random port, seeds {@code load.users} users and
+ * drives every scenario in {@code load.scenarios} over HTTP at
+ * {@code load.rate} requests per second for {@code load.duration}, after a
+ * warm-up run of {@code load.warmup} that is not recorded.
+ * <p>
+ * Only runs with {@code mvn test -Pload-test}. Reports go to
+ * {@code load.output} (default {@code target/load-reports}); pass a previous
+ * {@code summary.csv} as {@code load.baseline} to print the difference. Other
+ * profiles can be loaded with {@code -Dspring.profiles.active=sharded}.
+ * <p>
+ * Rate limiting is off because a single client would mostly measure 429s;
+ * the concurrency limiter stays on and its 503s appear in the report.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "spring.datasource.url=jdbc:h2:mem:load",
+    "spring.jpa.show-sql=false",
+    "app.rate-limit.enabled=false"
+})
+class LoadTest {
+    
+    @LocalServerPort
+    private int port;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Test
+    void runScenarios() throws Exception {
+        int rate = Integer.getInteger("load.rate", 500);
+        Duration duration = duration("load.duration", "10s");
+        Duration warmup = duration("load.warmup", "3s");
+        List<Scenario> scenarios = Arrays.stream(System.getProperty("load.scenarios",
+                        "lookup_heavy,spend_heavy,hot_account,list_scan").split(","))
+                .map(name -> Scenario.valueOf(name.trim().toUpperCase(Locale.ROOT)))
+                .toList();
+        
+        List<Operation.SeededUser> users = seed(Integer.getInteger("load.users", 2000));
+        LoadGenerator generator = new LoadGenerator(URI.create("http://localhost:" + port), users,
+                Integer.getInteger("load.max-outstanding", 10_000));
+        
+        LoadReport report = new LoadReport();
+        List<LoadGenerator.Result> results = new ArrayList<>();
+        for (Scenario scenario : scenarios) {
+            generator.run(scenario, rate, warmup);
+            LoadGenerator.Result result = generator.run(scenario, rate, duration);
+            report.add(result, rate, System.out);
+            results.add(result);
+            assertTrue(result.all.getTotalCount() > 0, "No request completed in " + scenario);
+        }
+        
+        Path output = Paths.get(System.getProperty("load.output", "target/load-reports"));
+        report.write(output, results);
+        System.out.println("\nReports written to " + output.toAbsolutePath());
+        
+        String baseline = System.getProperty("load.baseline");
+        if (baseline != null && Files.exists(Paths.get(baseline))) {
+            report.compare(Paths.get(baseline), System.out);
+        }
+    }
+    
+    // Balances are large enough that no spend in a run can fail for lack of credits
+    private List<Operation.SeededUser> seed(int count) {
+        List<User> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            batch.add(User.builder()
+                    .username("load_" + i)
+                    .email("load_" + i + "@example.com")
+                    .password("password123")
+                    .fullName("Load User " + i)
+                    .active(true)
+                    .credits(10_000_000.0)
+                    .build());
+        }
+        return userService.createUsers(batch).stream()
+                .map(user -> new Operation.SeededUser(user.getId(), user.getUsername()))
+                .toList();
+    }
+    
+    private static Duration duration(String property, String defaultValue) {
+        return DurationStyle.detectAndParse(System.getProperty(property, defaultValue));
+    }
+}
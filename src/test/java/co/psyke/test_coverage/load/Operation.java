@@ -0,0 +1,60 @@
+package co.psyke.test_coverage.load;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+
+/**
+ * The endpoints a {@link Scenario} mixes, each able to build its request for a
+ * given user.
+ */
+enum Operation {
+    
+    GET_BY_ID {
+        @Override
+        HttpRequest request(URI base, SeededUser user) {
+            return HttpRequest.newBuilder(base.resolve("/api/users/" + user.id())).GET().build();
+        }
+    },
+    GET_BY_USERNAME {
+        @Override
+        HttpRequest request(URI base, SeededUser user) {
+            return HttpRequest.newBuilder(base.resolve("/api/users/username/" + user.username())).GET().build();
+        }
+    },
+    GET_CREDITS {
+        @Override
+        HttpRequest request(URI base, SeededUser user) {
+            return HttpRequest.newBuilder(base.resolve("/api/users/" + user.id() + "/credits")).GET().build();
+        }
+    },
+    SPEND {
+        @Override
+        HttpRequest request(URI base, SeededUser user) {
+            return post(base.resolve("/api/users/" + user.id() + "/spend"));
+        }
+    },
+    ADD_CREDITS {
+        @Override
+        HttpRequest request(URI base, SeededUser user) {
+            return post(base.resolve("/api/users/" + user.id() + "/add-credits"));
+        }
+    },
+    LIST_ALL {
+        @Override
+        HttpRequest request(URI base, SeededUser user) {
+            return HttpRequest.newBuilder(base.resolve("/api/users")).GET().build();
+        }
+    };
+    
+    abstract HttpRequest request(URI base, SeededUser user);
+    
+    private static HttpRequest post(URI uri) {
+        return HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"amount\": 1.0}"))
+                .build();
+    }
+    
+    record SeededUser(long id, String username) {
+    }
+}
@@ -0,0 +1,69 @@
+package co.psyke.test_coverage.load;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Weighted operation mixes. Users are picked uniformly among the seeded ones,
+ * except for the share of requests a scenario sends to a single hot account.
+ */
+enum Scenario {
+    
+    // Mostly reads, as seen by profile pages and balance widgets
+    LOOKUP_HEAVY(0.0, Map.of(
+            Operation.GET_BY_ID, 50,
+            Operation.GET_BY_USERNAME, 15,
+            Operation.GET_CREDITS, 25,
+            Operation.SPEND, 8,
+            Operation.ADD_CREDITS, 2)),
+    
+    // Checkout traffic, every spend is a read-modify-write of the balance
+    SPEND_HEAVY(0.0, Map.of(
+            Operation.GET_CREDITS, 20,
+            Operation.SPEND, 60,
+            Operation.ADD_CREDITS, 20)),
+    
+    // Same as SPEND_HEAVY but 80% of requests contend on one account
+    HOT_ACCOUNT(0.8, Map.of(
+            Operation.GET_CREDITS, 20,
+            Operation.SPEND, 60,
+            Operation.ADD_CREDITS, 20)),
+    
+    // Lookups with periodic full scans competing for the same connections
+    LIST_SCAN(0.0, Map.of(
+            Operation.GET_BY_ID, 70,
+            Operation.GET_CREDITS, 25,
+            Operation.LIST_ALL, 5));
+    
+    private final double hotShare;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    
+    Scenario(double hotShare, Map<Operation, Integer> weights) {
+        this.hotShare = hotShare;
+        // EnumMap keeps the pick order stable between runs
+        Map<Operation, Integer> ordered = new EnumMap<>(weights);
+        this.operations = ordered.keySet().toArray(Operation[]::new);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += ordered.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+    
+    Operation nextOperation(ThreadLocalRandom random) {
+        int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        throw new IllegalStateException();
+    }
+    
+    int nextUser(ThreadLocalRandom random, int userCount) {
+        return random.nextDouble() < hotShare ? 0 : random.nextInt(userCount);
+    }
+}
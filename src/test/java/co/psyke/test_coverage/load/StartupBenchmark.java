@@ -0,0 +1,134 @@
+package co.psyke.test_coverage.load;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Measures the time from launching the application to its first successful
+ * {@code GET /api/users/{id}}, for each way of starting it:
+ * <ul>
+ *   <li>{@code jvm}: the extracted jar, without AOT or class data sharing;</li>
+ *   <li>{@code aot}: with the AOT-generated bean definitions;</li>
+ *   <li>{@code aot-cds}: AOT plus the AppCDS archive of the training run;</li>
+ *   <li>{@code native}: the native executable, when one was built.</li>
+ * </ul>
+ * Needs {@code mvn package -Pfast-start} first (and {@code -Pnative native:compile}
+ * for the native mode), then only runs with {@code mvn test -Pload-test}.
+ * Every mode is started {@code startup.runs} times; the results are printed and
+ * written to {@code startup.csv} in {@code load.output}, with each run's log.
+ */
+@Tag("load")
+class StartupBenchmark {
+    
+    private static final Duration START_TIMEOUT = Duration.ofMinutes(2);
+    
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+    
+    @Test
+    void compareStartupModes() throws Exception {
+        Path directory = Paths.get(System.getProperty("startup.directory", "target/fast-start")).toAbsolutePath();
+        Path jar = directory.resolve(System.getProperty("startup.jar", "test-coverage-0.0.1-SNAPSHOT.jar"));
+        Path archive = directory.resolve("application.jsa");
+        Path executable = Paths.get(System.getProperty("startup.native", "target/test-coverage")).toAbsolutePath();
+        assumeTrue(Files.exists(jar) && Files.exists(archive), "Run mvn package -Pfast-start first");
+        int runs = Integer.getInteger("startup.runs", 5);
+        long userId = Long.getLong("startup.user-id", 1);
+        Path output = Paths.get(System.getProperty("load.output", "target/load-reports")).toAbsolutePath();
+        Files.createDirectories(output);
+        
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> rows = new ArrayList<>();
+        rows.add("mode,runs,min_ms,median_ms,max_ms");
+        rows.add(measure("jvm", runs, userId, output, directory,
+                java, "-jar", jar.toString()));
+        rows.add(measure("aot", runs, userId, output, directory,
+                java, "-Dspring.aot.enabled=true", "-jar", jar.toString()));
+        rows.add(measure("aot-cds", runs, userId, output, directory,
+                java, "-XX:SharedArchiveFile=" + archive, "-Xlog:cds=error", "-Dspring.aot.enabled=true",
+                "-jar", jar.toString()));
+        if (Files.isExecutable(executable)) {
+            rows.add(measure("native", runs, userId, output, directory, executable.toString()));
+        }
+        
+        System.out.println();
+        rows.forEach(row -> System.out.println(row.replace(",", "\t")));
+        Files.write(output.resolve("startup.csv"), rows, StandardCharsets.UTF_8);
+    }
+    
+    private String measure(String mode, int runs, long userId, Path output, Path workingDirectory, String... command)
+            throws Exception {
+        long[] millis = new long[runs];
+        for (int run = 0; run < runs; run++) {
+            millis[run] = timeToFirstRead(command, userId, workingDirectory,
+                    output.resolve("startup-" + mode + "-" + run + ".log"));
+        }
+        Arrays.sort(millis);
+        return String.format(Locale.ROOT, "%s,%d,%d,%d,%d",
+                mode, runs, millis[0], millis[runs / 2], millis[runs - 1]);
+    }
+    
+    private long timeToFirstRead(String[] command, long userId, Path workingDirectory, Path log) throws Exception {
+        int port = freePort();
+        List<String> arguments = new ArrayList<>(List.of(command));
+        arguments.add("--server.port=" + port);
+        arguments.add("--spring.jpa.show-sql=false");
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/users/" + userId))
+                .timeout(Duration.ofSeconds(5))
+                .build();
+        
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(arguments)
+                .directory(workingDirectory.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        try {
+            long deadline = started + START_TIMEOUT.toNanos();
+            while (System.nanoTime() < deadline) {
+                assertTrue(process.isAlive(), () -> "Application exited with " + process.exitValue() + ", see " + log);
+                try {
+                    if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+                    }
+                } catch (IOException e) {
+                    // Not listening yet
+                }
+                Thread.sleep(5);
+            }
+            return fail("No successful read within " + START_TIMEOUT + ", see " + log);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+    
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
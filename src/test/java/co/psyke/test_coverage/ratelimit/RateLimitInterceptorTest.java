@@ -0,0 +1,87 @@
+package co.psyke.test_coverage.ratelimit;
+
+import co.psyke.test_coverage.cache.UserETagCache;
+import co.psyke.test_coverage.controller.UserController;
+import co.psyke.test_coverage.model.User;
+import co.psyke.test_coverage.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+class RateLimitInterceptorTest {
+    
+    @Mock
+    private UserService userService;
+    
+    @Spy
+    private UserETagCache userETagCache = new UserETagCache();
+    
+    @InjectMocks
+    private UserController userController;
+    
+    private MockMvc mockMvc;
+    
+    @BeforeEach
+    void setUp() {
+        // The clock stands still, so no token is refilled however long the requests take
+        RateLimiter rateLimiter = new RateLimiter(RateLimiterTest.properties(2, 1000, 100), () -> 0L);
+        mockMvc = MockMvcBuilders.standaloneSetup(userController)
+            .addInterceptors(new RateLimitInterceptor(rateLimiter))
+            .build();
+    }
+    
+    @Test
+    void testSpendCredits_RejectedWithRetryAfterBeforeServiceCall() throws Exception {
+        User annaVerdi = User.builder().id(3L).username("anna_verdi").credits(700.00).build();
+        when(userService.spendCredits(3L, 100.00)).thenReturn(annaVerdi);
+        
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/api/users/3/spend")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"amount\": 100.0}"))
+                .andExpect(status().isOk());
+        }
+        
+        mockMvc.perform(post("/api/users/3/spend")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"amount\": 100.0}"))
+            .andExpect(status().isTooManyRequests())
+            .andExpect(header().string("Retry-After", "1"));
+        
+        verify(userService, times(2)).spendCredits(3L, 100.00);
+    }
+    
+    @Test
+    void testLookupsAreLimitedPerUser() throws Exception {
+        when(userService.getUserById(anyLong())).thenReturn(Optional.of(User.builder().id(1L).build()));
+        
+        mockMvc.perform(get("/api/users/1")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/users/1")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/users/1")).andExpect(status().isTooManyRequests());
+        mockMvc.perform(get("/api/users/2")).andExpect(status().isOk());
+    }
+    
+    @Test
+    void testUnannotatedEndpointsAreNotLimited() throws Exception {
+        when(userService.getAllUsers()).thenReturn(List.of());
+        
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(get("/api/users")).andExpect(status().isOk());
+        }
+    }
+}
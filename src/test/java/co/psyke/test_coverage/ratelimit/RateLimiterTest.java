@@ -0,0 +1,95 @@
+package co.psyke.test_coverage.ratelimit;
+
+import co.psyke.test_coverage.config.RateLimitProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+    
+    private static final long SECOND = Duration.ofSeconds(1).toNanos();
+    
+    @Test
+    void testTokenBucket_BurstThenRefill() {
+        TokenBucket bucket = new TokenBucket(3, 1);
+        
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(SECOND, bucket.tryAcquire(0));
+        
+        assertEquals(0, bucket.tryAcquire(SECOND));
+        assertFalse(bucket.isIdle(SECOND));
+        assertTrue(bucket.isIdle(10 * SECOND));
+    }
+    
+    @Test
+    void testPerUserLimitDoesNotAffectOtherUsers() {
+        RateLimiter limiter = new RateLimiter(properties(2, 1000, 10));
+        
+        assertEquals(0, limiter.tryAcquire("id:1", 0));
+        assertEquals(0, limiter.tryAcquire("id:1", 0));
+        assertTrue(limiter.tryAcquire("id:1", 0) > 0);
+        assertEquals(0, limiter.tryAcquire("id:2", 0));
+        assertEquals(1, limiter.rejectedCount());
+    }
+    
+    @Test
+    void testGlobalLimitAppliesAcrossUsers() {
+        RateLimiter limiter = new RateLimiter(properties(100, 3, 10));
+        
+        assertEquals(0, limiter.tryAcquire("id:1", 0));
+        assertEquals(0, limiter.tryAcquire("id:2", 0));
+        assertEquals(0, limiter.tryAcquire(null, 0));
+        assertTrue(limiter.tryAcquire("id:3", 0) > 0);
+    }
+    
+    @Test
+    void testGlobalRejectionGivesTheUserTokenBack() {
+        RateLimitProperties properties = properties(2, 1, 10);
+        // Hardly refills during the test
+        properties.setPerUser(new RateLimitProperties.Limit(2, 0.01));
+        RateLimiter limiter = new RateLimiter(properties);
+        
+        assertEquals(0, limiter.tryAcquire("id:1", 0));
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire("id:2", 0) > 0);
+        }
+        
+        // Once the global bucket refills, the user still has the whole burst
+        assertEquals(0, limiter.tryAcquire("id:2", SECOND));
+        assertEquals(0, limiter.tryAcquire("id:2", 2 * SECOND));
+    }
+    
+    @Test
+    void testTrackedKeysStayBounded() {
+        RateLimiter limiter = new RateLimiter(properties(5, 1_000_000, 100));
+        
+        for (int user = 0; user < 1000; user++) {
+            limiter.tryAcquire("id:" + user, 0);
+        }
+        
+        assertTrue(limiter.trackedKeys() <= 101);
+    }
+    
+    @Test
+    void testDisabled() {
+        RateLimitProperties properties = properties(1, 1, 10);
+        properties.setEnabled(false);
+        RateLimiter limiter = new RateLimiter(properties);
+        
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, limiter.tryAcquire("id:1", 0));
+        }
+    }
+    
+    static RateLimitProperties properties(int perUserCapacity, int globalCapacity, int maxTrackedKeys) {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setPerUser(new RateLimitProperties.Limit(perUserCapacity, 1));
+        properties.setGlobal(new RateLimitProperties.Limit(globalCapacity, 1));
+        properties.setMaxTrackedKeys(maxTrackedKeys);
+        return properties;
+    }
+}
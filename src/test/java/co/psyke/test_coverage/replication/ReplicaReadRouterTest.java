@@ -0,0 +1,56 @@
+package co.psyke.test_coverage.replication;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicaReadRouterTest {
+    
+    private static final long SECOND = Duration.ofSeconds(1).toNanos();
+    
+    @Test
+    void testNeverSyncedReplicaIsNotUsed() {
+        ReplicaReadRouter router = new ReplicaReadRouter(1, Duration.ofSeconds(1));
+        
+        assertEquals(-1, router.pickReplica(null, 0));
+    }
+    
+    @Test
+    void testCaughtUpReplicaIsUsedRegardlessOfAge() {
+        ReplicaReadRouter router = new ReplicaReadRouter(1, Duration.ofSeconds(1));
+        router.synced(0, router.position(), 0);
+        
+        assertEquals(0, router.pickReplica(1L, 10 * SECOND));
+    }
+    
+    @Test
+    void testLaggingReplicaIsSkipped() {
+        ReplicaReadRouter router = new ReplicaReadRouter(1, Duration.ofSeconds(1));
+        router.synced(0, router.position(), 0);
+        router.written(2L);
+        
+        assertEquals(0, router.pickReplica(1L, SECOND / 2));
+        assertEquals(-1, router.pickReplica(1L, 2 * SECOND));
+    }
+    
+    @Test
+    void testWrittenUserIsReadFromPrimaryUntilReplicated() {
+        ReplicaReadRouter router = new ReplicaReadRouter(2, Duration.ofSeconds(1));
+        router.synced(0, router.position(), 0);
+        router.synced(1, router.position(), 0);
+        router.written(1L);
+        
+        assertTrue(router.isStale(1L));
+        assertFalse(router.isStale(2L));
+        assertEquals(-1, router.pickReplica(1L, 0));
+        
+        router.synced(1, router.position(), 0);
+        assertEquals(1, router.pickReplica(1L, 0));
+        
+        router.synced(0, router.position(), 0);
+        assertFalse(router.isStale(1L));
+        assertFalse(router.hasPendingWrites());
+    }
+}
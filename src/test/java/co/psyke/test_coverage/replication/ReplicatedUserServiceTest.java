@@ -0,0 +1,81 @@
+package co.psyke.test_coverage.replication;
+
+import co.psyke.test_coverage.model.User;
+import co.psyke.test_coverage.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Own primary so that the cached default context keeps its database; syncs are triggered by hand
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:replicated-primary",
+    "app.replication.sync-interval=1h",
+    "app.replication.max-lag=1h"
+})
+@ActiveProfiles("replicated")
+class ReplicatedUserServiceTest {
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private EmbeddedReplicaSynchronizer synchronizer;
+    
+    @Autowired
+    private ReplicaDataSources dataSources;
+    
+    private JdbcTemplate replica;
+    private User marioRossi;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        synchronizer.syncNow();
+        replica = new JdbcTemplate(dataSources.replicas().get(0));
+        marioRossi = userService.getUserByUsername("mario_rossi").orElseThrow();
+    }
+    
+    @Test
+    void testReadsAreServedByReplica() {
+        // Only visible if the read really goes to the replica
+        replica.update("UPDATE users SET credits = 42 WHERE id = ?", marioRossi.getId());
+        
+        assertEquals(42.00, userService.getCredits(marioRossi.getId()));
+        assertEquals(42.00, userService.getUserById(marioRossi.getId()).orElseThrow().getCredits());
+    }
+    
+    @Test
+    void testReadYourWritesAfterCreditMutation() throws Exception {
+        Double before = userService.getCredits(marioRossi.getId());
+        
+        userService.spendCredits(marioRossi.getId(), 100.00);
+        
+        // Replica still has the old balance, the caller must see the new one
+        assertEquals(before, replica.queryForObject("SELECT credits FROM users WHERE id = ?", Double.class, marioRossi.getId()));
+        assertEquals(before - 100.00, userService.getCredits(marioRossi.getId()));
+        
+        synchronizer.syncNow();
+        replica.update("UPDATE users SET credits = 42 WHERE id = ?", marioRossi.getId());
+        assertEquals(42.00, userService.getCredits(marioRossi.getId()));
+    }
+    
+    @Test
+    void testLookupOfUserCreatedAfterLastSync() {
+        User created = userService.createUser(User.builder()
+            .username("giorgio_replica")
+            .email("giorgio.replica@example.com")
+            .password("password123")
+            .fullName("Giorgio Replica")
+            .active(true)
+            .credits(500.00)
+            .build());
+        
+        assertEquals(created.getId(), userService.getUserByUsername("giorgio_replica").orElseThrow().getId());
+        assertEquals(created.getId(), userService.getUserByEmail("giorgio.replica@example.com").orElseThrow().getId());
+        assertEquals(500.00, userService.getCredits(created.getId()));
+    }
+}
@@ -1,14 +1,31 @@
 package co.psyke.test_coverage.service;
 
+import co.psyke.test_coverage.aggregates.CreditAggregates;
+import co.psyke.test_coverage.audit.CreditAuditPipeline;
+import co.psyke.test_coverage.cache.UserETagCache;
+import co.psyke.test_coverage.config.CreditAggregateProperties;
+import co.psyke.test_coverage.config.UserDeletionProperties;
 import co.psyke.test_coverage.exception.InsufficientCreditsException;
 import co.psyke.test_coverage.model.User;
+import co.psyke.test_coverage.model.UserChange;
+import co.psyke.test_coverage.replication.PrimaryOnlyReadRouter;
+import co.psyke.test_coverage.replication.ReadRouter;
+import co.psyke.test_coverage.repository.CreditHoldRepository;
+import co.psyke.test_coverage.repository.UserChangeRepository;
 import co.psyke.test_coverage.repository.UserRepository;
+import co.psyke.test_coverage.sharding.ShardRouter;
+import co.psyke.test_coverage.sharding.SingleShardRouter;
+import co.psyke.test_coverage.stream.CreditEvent;
+import co.psyke.test_coverage.stream.CreditEventBroadcaster;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.Arrays;
 import java.util.List;
@@ -23,6 +40,36 @@ class UserServiceTest {
     @Mock
     private UserRepository userRepository;
     
+    @Spy
+    private ShardRouter shardRouter = new SingleShardRouter();
+    
+    @Spy
+    private ReadRouter readRouter = new PrimaryOnlyReadRouter();
+    
+    @Spy
+    private UserETagCache userETagCache = new UserETagCache();
+    
+    @Mock
+    private CreditEventBroadcaster creditEventBroadcaster;
+    
+    @Mock
+    private CreditAuditPipeline creditAuditPipeline;
+    
+    @Mock
+    private CreditHoldRepository creditHoldRepository;
+    
+    @Mock
+    private UserChangeRepository userChangeRepository;
+    
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+    
+    @Spy
+    private UserDeletionProperties deletionProperties = new UserDeletionProperties();
+    
+    @Spy
+    private CreditAggregates creditAggregates = new CreditAggregates(new CreditAggregateProperties());
+    
     @InjectMocks
     private UserService userService;
     
@@ -176,9 +223,71 @@ class UserServiceTest {
     
     @Test
     void testDeleteUser() {
+        when(userRepository.hardDelete(1L)).thenReturn(1);
+        
+        assertTrue(userService.deleteUser(1L));
+        
+        verify(userRepository, times(1)).hardDelete(1L);
+        verify(userRepository, never()).findById(any());
+        verify(userRepository, never()).existsById(any());
+        verify(userChangeRepository, times(1)).append(1L, UserChange.Kind.DELETED);
+    }
+    
+    @Test
+    void testDeleteUser_NotFound() {
+        userETagCache.put(marioRossi);
+        when(userRepository.hardDelete(1L)).thenReturn(0);
+        
+        assertFalse(userService.deleteUser(1L));
+        
+        assertNotNull(userETagCache.get(1L));
+        verify(userChangeRepository, never()).append(any(), any());
+    }
+    
+    @Test
+    void testDeleteUser_SoftMode() {
+        deletionProperties.setSoft(true);
+        when(userRepository.softDelete(eq(1L), any())).thenReturn(1);
+        
+        assertTrue(userService.deleteUser(1L));
+        
+        verify(userRepository, never()).hardDelete(any());
+    }
+    
+    @Test
+    void testDeleteUser_EvictsETag() {
+        userETagCache.put(marioRossi);
+        when(userRepository.hardDelete(1L)).thenReturn(1);
+        
+        userService.deleteUser(1L);
+        
+        assertNull(userETagCache.get(1L));
+    }
+    
+    @Test
+    void testDeleteUsers_RequiresCriteria() {
+        assertThrows(IllegalArgumentException.class, () -> userService.deleteUsers(List.of(), null, null));
+    }
+    
+    @Test
+    void testCreditAggregates_FollowCreditChangesAndDeletes() {
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        userService.createUser(marioRossi);
+        userService.createUser(annaVerdi);
+        
+        marioRossi.setCredits(1400.00);
+        when(userRepository.spend(1L, 100.00)).thenReturn(1);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(marioRossi));
+        userService.spendCredits(1L, 100.00);
+        
+        assertEquals(2200.00, creditAggregates.summary().totalCredits());
+        assertEquals(1L, creditAggregates.top(1).getFirst().userId());
+        
+        when(userRepository.hardDelete(1L)).thenReturn(1);
         userService.deleteUser(1L);
         
-        verify(userRepository, times(1)).deleteById(1L);
+        assertEquals(800.00, creditAggregates.summary().totalCredits());
+        assertEquals(1, creditAggregates.summary().users());
     }
     
     @Test
@@ -213,16 +322,6 @@ class UserServiceTest {
     
     @Test
     void testSpendCredits_Success() {
-        User userWithCredits = User.builder()
-            .id(1L)
-            .username("mario_rossi")
-            .email("mario.rossi@example.com")
-            .password("password123")
-            .fullName("Mario Rossi")
-            .active(true)
-            .credits(1500.00)
-            .build();
-        
         User userAfterSpend = User.builder()
             .id(1L)
             .username("mario_rossi")
@@ -233,14 +332,20 @@ class UserServiceTest {
             .credits(1400.00)
             .build();
         
-        when(userRepository.findById(1L)).thenReturn(Optional.of(userWithCredits));
-        when(userRepository.save(any(User.class))).thenReturn(userAfterSpend);
+        when(userRepository.spend(1L, 100.00)).thenReturn(1);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(userAfterSpend));
         
         User result = userService.spendCredits(1L, 100.00);
         
         assertEquals(1400.00, result.getCredits());
+        verify(userRepository, times(1)).spend(1L, 100.00);
         verify(userRepository, times(1)).findById(1L);
-        verify(userRepository, times(1)).save(any(User.class));
+        verify(userRepository, never()).save(any(User.class));
+        verify(creditEventBroadcaster, times(1)).publish(argThat(event ->
+            event.getType() == CreditEvent.Type.SPEND && event.getCredits() == 1400.00));
+        verify(creditAuditPipeline, times(1)).publish(argThat(event ->
+            event.getType() == CreditEvent.Type.SPEND && event.getCredits() == 1400.00));
+        verify(userChangeRepository, times(1)).append(1L, UserChange.Kind.CREDITS);
     }
     
     @Test
@@ -255,6 +360,22 @@ class UserServiceTest {
         assertTrue(exception.getMessage().contains("Crediti insufficienti"));
         verify(userRepository, times(1)).findById(3L);
         verify(userRepository, never()).save(any());
+        verify(creditEventBroadcaster, never()).publish(any());
+        verify(creditAuditPipeline, never()).publish(any());
+    }
+    
+    @Test
+    void testSpendCredits_ReservedCreditsAreNotAvailable() {
+        annaVerdi.setReserved(750.00);
+        when(userRepository.findById(3L)).thenReturn(Optional.of(annaVerdi)); // credits = 800
+        
+        InsufficientCreditsException exception = assertThrows(
+            InsufficientCreditsException.class,
+            () -> userService.spendCredits(3L, 100.00)
+        );
+        
+        assertTrue(exception.getMessage().contains("50"));
+        verify(userRepository, never()).save(any());
     }
     
     @Test
@@ -279,16 +400,6 @@ class UserServiceTest {
     
     @Test
     void testAddCredits_Success() {
-        User userBefore = User.builder()
-            .id(2L)
-            .username("luigi_bianchi")
-            .email("luigi.bianchi@example.com")
-            .password("password123")
-            .fullName("Luigi Bianchi")
-            .active(true)
-            .credits(2000.00)
-            .build();
-        
         User userAfter = User.builder()
             .id(2L)
             .username("luigi_bianchi")
@@ -299,14 +410,29 @@ class UserServiceTest {
             .credits(2500.00)
             .build();
         
-        when(userRepository.findById(2L)).thenReturn(Optional.of(userBefore));
-        when(userRepository.save(any(User.class))).thenReturn(userAfter);
+        when(userRepository.add(2L, 500.00)).thenReturn(1);
+        when(userRepository.findById(2L)).thenReturn(Optional.of(userAfter));
         
         User result = userService.addCredits(2L, 500.00);
         
         assertEquals(2500.00, result.getCredits());
-        verify(userRepository, times(1)).findById(2L);
-        verify(userRepository, times(1)).save(any(User.class));
+        verify(userRepository, times(1)).add(2L, 500.00);
+        verify(userRepository, never()).save(any(User.class));
+        verify(creditEventBroadcaster, times(1)).publish(argThat(event ->
+            event.getType() == CreditEvent.Type.ADD && event.getAmount() == 500.00));
+    }
+    
+    @Test
+    void testSpendCredits_RefreshesETag() {
+        String before = userETagCache.put(annaVerdi);
+        annaVerdi.setCredits(700.00);
+        annaVerdi.setVersion(annaVerdi.getVersion() + 1);
+        when(userRepository.spend(3L, 100.00)).thenReturn(1);
+        when(userRepository.findById(3L)).thenReturn(Optional.of(annaVerdi));
+        
+        userService.spendCredits(3L, 100.00);
+        
+        assertNotEquals(before, userETagCache.get(3L));
     }
     
     @Test
@@ -322,10 +448,10 @@ class UserServiceTest {
     
     @Test
     void testAddCredits_UserNotFound() {
-        when(userRepository.findById(999L)).thenReturn(Optional.empty());
-        
         assertThrows(RuntimeException.class, () -> {
             userService.addCredits(999L, 100.00);
         });
+        
+        verify(creditEventBroadcaster, never()).publish(any());
     }
 }
@@ -0,0 +1,135 @@
+package co.psyke.test_coverage.service;
+
+import co.psyke.test_coverage.model.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:transfer",
+    "app.transfer.batch-size=3"
+})
+class UserTransferServiceTest {
+    
+    @Autowired
+    private UserTransferService userTransferService;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Test
+    void testImportCsv_ReportsInvalidRows() throws Exception {
+        String csv = """
+            username,email,password,fullName,active,credits
+            csv_uno,uno@example.com,pw,"Uno, Primo",true,100
+            csv_due,due@example.com,pw,Due,true,not-a-number
+            csv_tre,tre@example.com,pw,Tre,false,300
+            ,quattro@example.com,pw,Quattro,true,400
+            csv_cinque,cinque@example.com,pw,Cinque,true,500
+            """;
+        
+        ImportResult result = importAs(csv, UserFormat.CSV);
+        
+        assertEquals(3, result.getImported());
+        assertEquals(2, result.getFailed());
+        assertEquals(List.of(3L, 5L), result.getErrors().stream().map(ImportResult.RowError::getLine).toList());
+        
+        User uno = userService.getUserByUsername("csv_uno").orElseThrow();
+        assertEquals("Uno, Primo", uno.getFullName());
+        assertEquals(100.00, uno.getCredits());
+        assertFalse(userService.getUserByUsername("csv_tre").orElseThrow().getActive());
+    }
+    
+    @Test
+    void testImportNdjson_DuplicateInBatchDoesNotRejectTheOthers() throws Exception {
+        String ndjson = """
+            {"username":"json_uno","email":"uno@example.com","password":"pw","credits":10}
+            {"username":"mario_rossi","email":"dup@example.com","password":"pw"}
+            {"username":"json_due","email":"due@example.com","password":"pw"}
+            {not json}
+            """;
+        
+        ImportResult result = importAs(ndjson, UserFormat.NDJSON);
+        
+        assertEquals(2, result.getImported());
+        assertEquals(2, result.getFailed());
+        assertEquals(10.00, userService.getUserByUsername("json_uno").orElseThrow().getCredits());
+        assertEquals(1000.00, userService.getUserByUsername("json_due").orElseThrow().getCredits());
+    }
+    
+    @Test
+    void testImportCsv_MissingRequiredColumn() {
+        assertThrows(IllegalArgumentException.class, () -> importAs("username,email\nx,y\n", UserFormat.CSV));
+    }
+    
+    @Test
+    void testExportCsv_ContainsEveryUser() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        
+        long exported = userTransferService.exportUsers(Channels.newChannel(out), UserFormat.CSV, false);
+        
+        List<String> lines = Arrays.asList(out.toString(StandardCharsets.UTF_8).split("\n"));
+        assertEquals("id,username,email,fullName,active,credits", lines.get(0));
+        assertEquals(userService.countUsers(), exported);
+        assertEquals(exported + 1, lines.size());
+        assertTrue(lines.stream().anyMatch(line -> line.contains(",mario_rossi,")));
+    }
+    
+    @Test
+    void testExportNdjson_RoundTrip() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        userTransferService.exportUsers(Channels.newChannel(out), UserFormat.NDJSON, true);
+        String renamed = out.toString(StandardCharsets.UTF_8).replace("\"username\":\"", "\"username\":\"copy_");
+        
+        ImportResult result = importAs(renamed, UserFormat.NDJSON);
+        
+        assertEquals(0, result.getFailed());
+        assertEquals(userService.getUserByUsername("sara_blu").orElseThrow().getCredits(),
+            userService.getUserByUsername("copy_sara_blu").orElseThrow().getCredits());
+    }
+    
+    @Test
+    void testExport_LeavesPasswordsOutUnlessAsked() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        userTransferService.exportUsers(Channels.newChannel(out), UserFormat.NDJSON, false);
+        assertFalse(out.toString(StandardCharsets.UTF_8).contains("\"password\""));
+        
+        out.reset();
+        userTransferService.exportUsers(Channels.newChannel(out), UserFormat.CSV, true);
+        assertTrue(out.toString(StandardCharsets.UTF_8).startsWith("id,username,email,password,"));
+    }
+    
+    @Test
+    void testCsv_QuotedLineBreaksRoundTrip() throws Exception {
+        String csv = "username,email,password,fullName\n"
+            + "riga_uno,riga.uno@example.com,pw,\"Riga\nUno\"\n"
+            + "riga_due,,pw,x\n";
+        
+        ImportResult result = importAs(csv, UserFormat.CSV);
+        
+        assertEquals(1, result.getImported());
+        assertEquals(List.of(4L), result.getErrors().stream().map(ImportResult.RowError::getLine).toList());
+        User imported = userService.getUserByUsername("riga_uno").orElseThrow();
+        assertEquals("Riga\nUno", imported.getFullName());
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        userTransferService.exportUsers(Channels.newChannel(out), UserFormat.CSV, true);
+        // Removed again so the other exports keep one record per line
+        userService.deleteUser(imported.getId());
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains(",\"Riga\nUno\","));
+    }
+    
+    private ImportResult importAs(String body, UserFormat format) throws Exception {
+        ByteArrayInputStream in = new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+        return userTransferService.importUsers(Channels.newChannel(in), format);
+    }
+}
@@ -0,0 +1,147 @@
+package co.psyke.test_coverage.sharding;
+
+import co.psyke.test_coverage.model.User;
+import co.psyke.test_coverage.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("sharded")
+class ShardedUserServiceTest {
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    @Autowired
+    private ShardDataSources shardDataSources;
+    
+    @Test
+    void testDefaultUsersAreSpreadAcrossShards() {
+        assertEquals(4, shardRouter.shardCount());
+        
+        long populatedShards = shardDataSources.all().stream()
+            .mapToLong(shard -> new JdbcTemplate(shard).queryForObject("SELECT COUNT(*) FROM users", Long.class))
+            .filter(count -> count > 0)
+            .count();
+        assertTrue(populatedShards > 1);
+        assertEquals(userService.countUsers(), userService.getAllUsers().size());
+    }
+    
+    @Test
+    void testEveryShardRunsTheMigrations() {
+        for (DataSource shard : shardDataSources.all()) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(shard);
+            
+            assertEquals(0L, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM \"flyway_schema_history\" WHERE NOT \"success\"", Long.class));
+            assertEquals(1L, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS WHERE CONSTRAINT_NAME = 'UK_USERS_USERNAME'",
+                Long.class));
+        }
+    }
+    
+    @Test
+    void testUserIsStoredOnTheShardOwningItsId() {
+        User created = userService.createUser(newUser("giulia_sharded"));
+        
+        int shard = shardRouter.shardForId(created.getId());
+        Long rows = new JdbcTemplate(shardDataSources.get(shard))
+            .queryForObject("SELECT COUNT(*) FROM users WHERE id = ?", Long.class, created.getId());
+        assertEquals(1L, rows);
+        
+        assertEquals("giulia_sharded", userService.getUserById(created.getId()).orElseThrow().getUsername());
+        assertEquals(created.getId(), userService.getUserByUsername("giulia_sharded").orElseThrow().getId());
+        assertEquals(created.getId(), userService.getUserByEmail("giulia_sharded@example.com").orElseThrow().getId());
+    }
+    
+    @Test
+    void testCreditsAreUpdatedOnOwningShard() {
+        User created = userService.createUser(newUser("paolo_sharded"));
+        
+        userService.spendCredits(created.getId(), 250.00);
+        userService.addCredits(created.getId(), 50.00);
+        
+        assertEquals(800.00, userService.getCredits(created.getId()));
+    }
+    
+    @Test
+    void testUsernameIsUniqueAcrossShards() {
+        userService.createUser(newUser("chiara_sharded"));
+        long before = userService.countUsers();
+        
+        assertThrows(RuntimeException.class, () -> userService.createUser(newUser("chiara_sharded")));
+        assertEquals(before, userService.countUsers());
+    }
+    
+    @Test
+    void testRenameAndDeleteKeepDirectoryInSync() {
+        User created = userService.createUser(newUser("luca_sharded"));
+        User details = newUser("luca_renamed");
+        
+        userService.updateUser(created.getId(), details);
+        
+        assertTrue(userService.getUserByUsername("luca_sharded").isEmpty());
+        assertEquals(created.getId(), userService.getUserByUsername("luca_renamed").orElseThrow().getId());
+        
+        userService.deleteUser(created.getId());
+        
+        assertFalse(userService.userExists(created.getId()));
+        Optional<User> lookup = userService.getUserByUsername("luca_renamed");
+        assertTrue(lookup.isEmpty());
+    }
+    
+    @Test
+    void testBulkDeleteAcrossShards() {
+        List<Long> dormant = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            User user = newUser("dormant_" + i);
+            user.setActive(false);
+            user.setCredits(1.00);
+            dormant.add(userService.createUser(user).getId());
+        }
+        User kept = userService.createUser(newUser("kept_sharded"));
+        User byId = userService.createUser(newUser("by_id_sharded"));
+        
+        assertEquals(6, userService.deleteUsers(null, false, 1.00));
+        // Already deleted ids are not counted
+        assertEquals(1, userService.deleteUsers(List.of(byId.getId(), dormant.get(0)), null, null));
+        
+        dormant.forEach(id -> assertFalse(userService.userExists(id)));
+        assertFalse(userService.userExists(byId.getId()));
+        assertTrue(userService.userExists(kept.getId()));
+        assertTrue(userService.getUserByUsername("dormant_3").isEmpty());
+    }
+    
+    @Test
+    void testGetAllUsersIsOrderedById() {
+        List<User> users = userService.getAllUsers();
+        
+        for (int i = 1; i < users.size(); i++) {
+            assertTrue(users.get(i - 1).getId() < users.get(i).getId());
+        }
+    }
+    
+    private User newUser(String username) {
+        return User.builder()
+            .username(username)
+            .email(username + "@example.com")
+            .password("password123")
+            .fullName(username)
+            .active(true)
+            .credits(1000.00)
+            .build();
+    }
+}
@@ -0,0 +1,76 @@
+package co.psyke.test_coverage.storage;
+
+import co.psyke.test_coverage.TestCoverageApplication;
+import co.psyke.test_coverage.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DurableStorageTest {
+    
+    @TempDir
+    private Path directory;
+    
+    @Test
+    void testCreditsSurviveRestart() {
+        Long id;
+        try (ConfigurableApplicationContext context = start()) {
+            UserService userService = context.getBean(UserService.class);
+            assertEquals(10, userService.countUsers());
+            
+            id = userService.getUserByUsername("anna_verdi").orElseThrow().getId();
+            userService.spendCredits(id, 300.00);
+        }
+        
+        try (ConfigurableApplicationContext context = start()) {
+            UserService userService = context.getBean(UserService.class);
+            
+            // Not seeded a second time
+            assertEquals(10, userService.countUsers());
+            assertEquals(500.00, userService.getCredits(id));
+        }
+    }
+    
+    @Test
+    void testSchemaIsCreatedByMigrations() {
+        try (ConfigurableApplicationContext context = start()) {
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            
+            Integer applied = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM \"flyway_schema_history\" WHERE \"success\"", Integer.class);
+            assertTrue(applied >= 1);
+        }
+    }
+    
+    @Test
+    void testCheckpointedCreditsSurviveCrash() throws Exception {
+        Long id;
+        try (ConfigurableApplicationContext context = start()) {
+            UserService userService = context.getBean(UserService.class);
+            id = userService.getUserByUsername("mario_rossi").orElseThrow().getId();
+            userService.addCredits(id, 250.00);
+            
+            context.getBean(H2Checkpointer.class).checkpoint(true);
+            // Closes the database without storing anything, as a crash would
+            context.getBean(JdbcTemplate.class).execute("SHUTDOWN IMMEDIATELY");
+        }
+        
+        try (ConfigurableApplicationContext context = start()) {
+            assertEquals(1750.00, context.getBean(UserService.class).getCredits(id));
+        }
+    }
+    
+    private ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(TestCoverageApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("durable")
+                .run("--app.durable.directory=" + directory);
+    }
+}
@@ -0,0 +1,136 @@
+package co.psyke.test_coverage.stream;
+
+import co.psyke.test_coverage.config.CreditStreamProperties;
+import co.psyke.test_coverage.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CreditEventBroadcasterTest {
+    
+    private CreditEventBroadcaster broadcaster;
+    
+    private User marioRossi;
+    private User annaVerdi;
+    
+    @BeforeEach
+    void setUp() {
+        CreditStreamProperties properties = new CreditStreamProperties();
+        properties.setBufferSize(4);
+        properties.setHeartbeat(Duration.ofSeconds(30));
+        broadcaster = new CreditEventBroadcaster(properties);
+        
+        marioRossi = User.builder().id(1L).username("mario_rossi").credits(1400.00).build();
+        annaVerdi = User.builder().id(3L).username("anna_verdi").credits(700.00).build();
+    }
+    
+    @Test
+    void testPublish_DeliversToUserAndGlobalSubscribers() throws Exception {
+        RecordingSink marioSink = new RecordingSink(1);
+        RecordingSink allSink = new RecordingSink(2);
+        broadcaster.subscribe(1L, marioSink);
+        broadcaster.subscribe(null, allSink);
+        
+        broadcaster.publish(CreditEvent.of(marioRossi, CreditEvent.Type.SPEND, 100.00));
+        broadcaster.publish(CreditEvent.of(annaVerdi, CreditEvent.Type.SPEND, 100.00));
+        
+        assertTrue(marioSink.delivered.await(5, TimeUnit.SECONDS));
+        assertTrue(allSink.delivered.await(5, TimeUnit.SECONDS));
+        assertEquals(1, marioSink.events.size());
+        assertEquals(1L, marioSink.events.get(0).getUserId());
+        assertEquals(2, allSink.events.size());
+        assertEquals(2, broadcaster.publishedCount());
+    }
+    
+    @Test
+    void testPublish_DropsSlowSubscriber() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingSink slowSink = new BlockingSink(release);
+        CreditEventBroadcaster.Subscription slow = broadcaster.subscribe(1L, slowSink);
+        
+        // One event stuck in the sink plus a full buffer, the next one overflows
+        for (int i = 0; i < 10; i++) {
+            broadcaster.publish(CreditEvent.of(marioRossi, CreditEvent.Type.ADD, 1.00));
+        }
+        
+        assertFalse(slow.isOpen());
+        assertEquals(1, broadcaster.droppedCount());
+        assertEquals(0, broadcaster.subscriberCount());
+        release.countDown();
+        assertTrue(slowSink.closed.await(5, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    void testCancel_RemovesSubscriber() throws Exception {
+        RecordingSink sink = new RecordingSink(1);
+        CreditEventBroadcaster.Subscription subscription = broadcaster.subscribe(1L, sink);
+        assertEquals(1, broadcaster.subscriberCount());
+        
+        subscription.cancel();
+        
+        assertEquals(0, broadcaster.subscriberCount());
+        assertTrue(sink.closed.await(5, TimeUnit.SECONDS));
+    }
+    
+    private static class RecordingSink implements CreditEventSink {
+        
+        final List<CreditEvent> events = new CopyOnWriteArrayList<>();
+        final CountDownLatch delivered;
+        final CountDownLatch closed = new CountDownLatch(1);
+        
+        RecordingSink(int expected) {
+            this.delivered = new CountDownLatch(expected);
+        }
+        
+        @Override
+        public void send(CreditEvent event) {
+            events.add(event);
+            delivered.countDown();
+        }
+        
+        @Override
+        public void heartbeat() {
+        }
+        
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+    }
+    
+    private static class BlockingSink implements CreditEventSink {
+        
+        final CountDownLatch release;
+        final CountDownLatch closed = new CountDownLatch(1);
+        
+        BlockingSink(CountDownLatch release) {
+            this.release = release;
+        }
+        
+        @Override
+        public void send(CreditEvent event) throws IOException {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+        
+        @Override
+        public void heartbeat() {
+        }
+        
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+    }
+}